@@ -0,0 +1,262 @@
+package com.gelerion.kafka.streams.crypto.sentiment;
+
+import com.gelerion.kafka.streams.crypto.sentiment.language.AsyncLanguageClient;
+import com.gelerion.kafka.streams.crypto.sentiment.language.DummyLanguageClient;
+import com.gelerion.kafka.streams.crypto.sentiment.language.Watchlist;
+import com.gelerion.kafka.streams.crypto.sentiment.model.EntitySentiment;
+import com.gelerion.kafka.streams.crypto.sentiment.processors.DeduplicationTransformer;
+import com.gelerion.kafka.streams.crypto.sentiment.processors.LanguageRouter;
+import com.gelerion.kafka.streams.crypto.sentiment.processors.OrderedAsyncTransformer;
+import com.gelerion.kafka.streams.crypto.sentiment.serialization.Tweet;
+import com.gelerion.kafka.streams.crypto.sentiment.serialization.json.TweetDeserializer;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.TestInputTopic;
+import org.apache.kafka.streams.TestOutputTopic;
+import org.apache.kafka.streams.TopologyTestDriver;
+import org.apache.kafka.streams.processor.MockProcessorContext;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.Stores;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static com.gelerion.kafka.streams.crypto.sentiment.CryptoTopology.*;
+
+/**
+ * Measures the crypto sentiment topology on a synthetic tweet corpus, see {@link SyntheticTweets}.
+ *
+ * {@code topology} pipes the corpus through {@link CryptoTopology#build} in a {@link TopologyTestDriver}, end to end
+ * (printing, de-duplication, Avro serialization, windowed aggregates). The state is kept in memory: the driver
+ * commits after every record, and a RocksDB flush per record would hide everything else. The other benchmarks run the processors
+ * of a single stage on the same corpus, to tell which stage a regression comes from:
+ * <ul>
+ *   <li>deserialize: {@link TweetDeserializer}</li>
+ *   <li>filter: the retweet filter and {@link DeduplicationTransformer} (on an in-memory store)</li>
+ *   <li>translate: {@link LanguageRouter}</li>
+ *   <li>sentiment: the sentiment {@link OrderedAsyncTransformer} and the watchlist filter</li>
+ * </ul>
+ * The stages after deserialization get already deserialized tweets, so their scores exclude it. The language
+ * provider is a synchronous {@link DummyLanguageClient}, i.e. only our own per-record cost is measured, and the
+ * result cache is left out since the synthetic texts repeat.
+ *
+ * Scores are records/s, the allocation rate comes from the gc profiler (see build.gradle). The corpus mix can be
+ * changed with the parameters, e.g.
+ * ./gradlew jmhJar && java -jar build/libs/02_crypto_sentiment-jmh.jar CryptoTopologyBenchmark -p retweetPercent=50
+ * ({@code -p slidingWindowMinutes=5} for the sliding windows of the application)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(CryptoTopologyBenchmark.RECORDS)
+public class CryptoTopologyBenchmark {
+    static final int RECORDS = 1_000;
+
+    @Param("20")
+    public int retweetPercent;
+    @Param("30")
+    public int nonEnglishPercent;
+    @Param("2")
+    public int mentionsPerTweet;
+    // shorter than in the application (SLIDING_WINDOW_SIZE), the sliding windows would dominate the score otherwise
+    @Param("1")
+    public int slidingWindowMinutes;
+
+    private SyntheticTweets corpus;
+    private final TweetDeserializer deserializer = new TweetDeserializer();
+    private Tweet[] tweets;
+
+    // end to end
+    private PrintStream stdout;
+    private Path stateDir;
+    private TopologyTestDriver driver;
+    private TestInputTopic<byte[], byte[]> input;
+    private final Map<String, TestOutputTopic<byte[], byte[]>> outputs = new HashMap<>();
+
+    // single stages
+    private Watchlist watchlist;
+    private AsyncLanguageClient languageClient;
+    private MockProcessorContext dedupContext;
+    private DeduplicationTransformer<byte[], Tweet> dedup;
+    private MockProcessorContext routerContext;
+    private LanguageRouter<byte[]> router;
+    private MockProcessorContext sentimentContext;
+    private OrderedAsyncTransformer<byte[], Tweet, List<EntitySentiment>> sentiment;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("deprecation") // MockProcessorContext only supports the old StateStore#init in 2.7
+    public void setup() throws IOException {
+        corpus = new SyntheticTweets(RECORDS, retweetPercent, nonEnglishPercent, mentionsPerTweet);
+        tweets = new Tweet[RECORDS];
+        watchlist = Watchlist.load();
+        languageClient = new SynchronousLanguageClient(watchlist);
+
+        // the topology prints every record, which we want to measure but not to see
+        stdout = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        }));
+        stateDir = Files.createTempDirectory("crypto-topology-benchmark");
+        Properties props = new Properties();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, "benchmark");
+        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "dummy:1234");
+        props.put(StreamsConfig.STATE_DIR_CONFIG, stateDir.toString());
+        driver = new TopologyTestDriver(
+                CryptoTopology.build(languageClient, watchlist, "mock://crypto-topology-benchmark", false,
+                        Duration.ofMinutes(slidingWindowMinutes)), props);
+        input = driver.createInputTopic("tweets", new ByteArraySerializer(), new ByteArraySerializer());
+
+        dedupContext = new MockProcessorContext();
+        KeyValueStore<Long, byte[]> store = Stores.keyValueStoreBuilder(
+                        Stores.inMemoryKeyValueStore(DEDUP_STORE), Serdes.Long(), Serdes.ByteArray())
+                .withLoggingDisabled()
+                .build();
+        store.init(dedupContext, store);
+        dedup = new DeduplicationTransformer<>(DEDUP_STORE, Tweet::getId, Tweet::getCreatedAt,
+                DEDUP_CAPACITY, DEDUP_FALSE_POSITIVE_RATE, DEDUP_RETENTION);
+        dedup.init(dedupContext);
+
+        routerContext = new MockProcessorContext();
+        router = new LanguageRouter<>("en", languageClient::translate,
+                TRANSLATION_BATCH_SIZE, LANGUAGE_MAX_IN_FLIGHT, TRANSLATION_LINGER, LANGUAGE_TIMEOUT);
+        router.init(routerContext);
+
+        sentimentContext = new MockProcessorContext();
+        sentiment = new OrderedAsyncTransformer<>(languageClient::getEntitySentiment,
+                LANGUAGE_BATCH_SIZE, LANGUAGE_MAX_IN_FLIGHT, LANGUAGE_LINGER, LANGUAGE_TIMEOUT);
+        sentiment.init(sentimentContext);
+    }
+
+    @Setup(Level.Invocation)
+    public void nextRecords() {
+        corpus.next();
+        byte[][] records = corpus.records();
+        for (int i = 0; i < RECORDS; i++) {
+            tweets[i] = deserializer.deserialize("tweets", records[i]);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        driver.close();
+        System.setOut(stdout);
+        try (java.util.stream.Stream<Path> files = Files.walk(stateDir)) {
+            files.sorted(java.util.Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public void topology(Blackhole blackhole) {
+        byte[][] records = corpus.records();
+        long[] timestamps = corpus.timestamps();
+        for (int i = 0; i < RECORDS; i++) {
+            input.pipeInput(null, records[i], timestamps[i]);
+        }
+        // send the partial batches of the language stages
+        driver.advanceWallClockTime(TRANSLATION_LINGER);
+        driver.advanceWallClockTime(TRANSLATION_LINGER);
+
+        // the driver keeps everything that is produced (output, repartition and changelog topics) until it is read
+        for (String topic : driver.producedTopicNames()) {
+            TestOutputTopic<byte[], byte[]> output = outputs.computeIfAbsent(topic, name ->
+                    driver.createOutputTopic(name, new ByteArrayDeserializer(), new ByteArrayDeserializer()));
+            blackhole.consume(output.readRecordsToList());
+        }
+    }
+
+    @Benchmark
+    public void deserialize(Blackhole blackhole) {
+        for (byte[] record : corpus.records()) {
+            Tweet tweet = deserializer.deserialize("tweets", record);
+            blackhole.consume(tweet.isRetweet());
+        }
+    }
+
+    @Benchmark
+    public void filter(Blackhole blackhole) {
+        for (Tweet tweet : tweets) {
+            if (!tweet.isRetweet()) {
+                dedupContext.setTimestamp(tweet.getCreatedAt());
+                blackhole.consume(dedup.transform(null, tweet));
+            }
+        }
+    }
+
+    @Benchmark
+    public void translate(Blackhole blackhole) {
+        for (Tweet tweet : tweets) {
+            routerContext.setTimestamp(tweet.getCreatedAt());
+            blackhole.consume(router.transform(null, tweet));
+        }
+        // send the partial batches
+        routerContext.scheduledPunctuators().get(0).getPunctuator().punctuate(0);
+        blackhole.consume(routerContext.forwarded().size());
+        routerContext.resetForwards();
+    }
+
+    @Benchmark
+    public void sentiment(Blackhole blackhole) {
+        for (Tweet tweet : tweets) {
+            sentimentContext.setTimestamp(tweet.getCreatedAt());
+            sentiment.transform(null, tweet);
+        }
+        // send the partial batch
+        sentimentContext.scheduledPunctuators().get(0).getPunctuator().punctuate(0);
+        for (MockProcessorContext.CapturedForward forward : sentimentContext.forwarded()) {
+            @SuppressWarnings("unchecked")
+            KeyValue<byte[], List<EntitySentiment>> result = (KeyValue<byte[], List<EntitySentiment>>) forward.keyValue();
+            blackhole.consume(CryptoTopology.keepWatchlisted(watchlist, new ArrayList<>(result.value)));
+        }
+        sentimentContext.resetForwards();
+    }
+
+    /**
+     * Answers on the calling thread, so that the provider's latency and thread hand-offs don't hide our own cost.
+     */
+    private static final class SynchronousLanguageClient extends DummyLanguageClient implements AsyncLanguageClient {
+
+        SynchronousLanguageClient(Watchlist watchlist) {
+            super(watchlist);
+        }
+
+        @Override
+        public CompletableFuture<List<Tweet>> translate(List<Tweet> tweets, String targetLanguage) {
+            List<Tweet> results = new ArrayList<>(tweets.size());
+            for (Tweet tweet : tweets) {
+                results.add(translate(tweet, targetLanguage));
+            }
+            return CompletableFuture.completedFuture(results);
+        }
+
+        @Override
+        public CompletableFuture<List<List<EntitySentiment>>> getEntitySentiment(List<Tweet> tweets) {
+            List<List<EntitySentiment>> results = new ArrayList<>(tweets.size());
+            for (Tweet tweet : tweets) {
+                results.add(getEntitySentiment(tweet));
+            }
+            return CompletableFuture.completedFuture(results);
+        }
+    }
+}
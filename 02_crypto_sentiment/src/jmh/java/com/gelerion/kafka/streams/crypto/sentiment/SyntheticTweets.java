@@ -0,0 +1,104 @@
+package com.gelerion.kafka.streams.crypto.sentiment;
+
+import java.util.Random;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A synthetic tweet corpus in the recorded format (see data/test.json), with a configurable share of retweets,
+ * non-English tweets and watchlisted mentions per tweet.
+ *
+ * The records are generated once; {@link #next()} then rewrites their ids and creation times in place, so that every
+ * round looks like new tweets to the de-duplication stage and moves event time forward.
+ */
+class SyntheticTweets {
+    private static final String[] LANGUAGES = {"es", "de", "fr", "pt", "ja"};
+    // watchlisted aliases (see watchlist.txt), followed by tickers we don't track
+    private static final String[] MENTIONS = {"#bitcoin", "$BTC", "xbt", "#ethereum", "$eth", "Ether"};
+    private static final String[] OTHERS = {"#dogecoin", "$SOL", "#cardano"};
+    private static final int ID_DIGITS = 19;
+    private static final int TIMESTAMP_DIGITS = 13;
+    private static final long FIRST_ID = 1_000_000_000_000_000_000L;
+    // ten tweets per second of event time
+    private static final long INTERVAL_MS = 100;
+
+    private final byte[][] records;
+    private final int[] createdAtOffsets;
+    private final int[] idOffsets;
+    private final long[] timestamps;
+
+    private long nextId = FIRST_ID;
+    private long nextTimestamp = 1_600_000_000_000L;
+
+    SyntheticTweets(int size, int retweetPercent, int nonEnglishPercent, int mentionsPerTweet) {
+        Random random = new Random(42);
+        records = new byte[size][];
+        createdAtOffsets = new int[size];
+        idOffsets = new int[size];
+        timestamps = new long[size];
+
+        for (int i = 0; i < size; i++) {
+            boolean retweet = random.nextInt(100) < retweetPercent;
+            String lang = random.nextInt(100) < nonEnglishPercent
+                    ? LANGUAGES[random.nextInt(LANGUAGES.length)]
+                    : "en";
+
+            StringBuilder text = new StringBuilder("Market update #").append(i).append(':');
+            for (int m = 0; m < mentionsPerTweet; m++) {
+                text.append(' ').append(MENTIONS[random.nextInt(MENTIONS.length)])
+                        .append(random.nextBoolean() ? " is looking super strong," : " has me worried though,");
+            }
+            text.append(" unlike ").append(OTHERS[random.nextInt(OTHERS.length)]);
+
+            String prefix = "{\"CreatedAt\":";
+            String json = prefix + digits(nextTimestamp, TIMESTAMP_DIGITS)
+                    + ",\"Id\":" + digits(FIRST_ID, ID_DIGITS)
+                    + ",\"Text\":\"" + text + "\""
+                    + ",\"Lang\":\"" + lang + "\""
+                    + ",\"Retweet\":" + retweet
+                    + ",\"Source\":\"\",\"User\":{\"Id\":\"14377870\",\"Name\":\"MagicalPipelines\","
+                    + "\"Description\":\"Learn something magical today.\",\"ScreenName\":\"MagicalPipelines\","
+                    + "\"URL\":\"http://www.magicalpipelines.com\",\"FollowersCount\":\"248247\","
+                    + "\"FriendsCount\":\"16417\"}}";
+            records[i] = json.getBytes(UTF_8);
+            createdAtOffsets[i] = prefix.length();
+            idOffsets[i] = prefix.length() + TIMESTAMP_DIGITS + ",\"Id\":".length();
+        }
+    }
+
+    /**
+     * Assigns fresh ids and later creation times to all the records.
+     */
+    void next() {
+        for (int i = 0; i < records.length; i++) {
+            timestamps[i] = nextTimestamp;
+            write(records[i], createdAtOffsets[i], TIMESTAMP_DIGITS, nextTimestamp);
+            write(records[i], idOffsets[i], ID_DIGITS, nextId++);
+            nextTimestamp += INTERVAL_MS;
+        }
+    }
+
+    byte[][] records() {
+        return records;
+    }
+
+    /**
+     * The creation time of every record, i.e. its event time.
+     */
+    long[] timestamps() {
+        return timestamps;
+    }
+
+    private static String digits(long value, int digits) {
+        byte[] bytes = new byte[digits];
+        write(bytes, 0, digits, value);
+        return new String(bytes, UTF_8);
+    }
+
+    private static void write(byte[] bytes, int offset, int digits, long value) {
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            bytes[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.gelerion.kafka.streams.crypto.sentiment.serialization.avro;
+
+import com.gelerion.kafka.streams.crypto.sentiment.model.EntitySentiment;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serializer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the Avro serdes available for {@link EntitySentiment}:
+ * <ul>
+ *   <li>fingerprint: {@link AvroSerdes#entitySentimentFingerprinted()}</li>
+ *   <li>registryless: com.mitchseymour's AvroSerdes, a new writer, buffer and encoder per record</li>
+ *   <li>registry: Confluent's SpecificAvroSerde, backed by the in-memory mock registry ({@code mock://} url)
+ *       instead of a running Schema Registry</li>
+ * </ul>
+ * The encoded size of the sample is printed in the setup of every trial, as bytes/record.
+ *
+ * ./gradlew jmh -Pjmh.includes=EntitySentimentSerdeBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@OperationsPerInvocation(EntitySentimentSerdeBenchmark.RECORDS)
+public class EntitySentimentSerdeBenchmark {
+    static final int RECORDS = 1000;
+    private static final String TOPIC = "crypto-sentiment";
+
+    @Param({"fingerprint", "registryless", "registry"})
+    public String serde;
+
+    private Serializer<EntitySentiment> serializer;
+    private Deserializer<EntitySentiment> deserializer;
+    private EntitySentiment[] records;
+    private byte[][] encoded;
+
+    @Setup
+    public void setup() {
+        Serde<EntitySentiment> entitySentimentSerde;
+        switch (serde) {
+            case "fingerprint":
+                entitySentimentSerde = AvroSerdes.entitySentimentFingerprinted();
+                break;
+            case "registryless":
+                entitySentimentSerde = com.mitchseymour.kafka.serialization.avro.AvroSerdes.get(EntitySentiment.class);
+                break;
+            case "registry":
+                entitySentimentSerde = AvroSerdes.entitySentiment("mock://entity-sentiment-benchmark");
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown serde " + serde);
+        }
+        serializer = entitySentimentSerde.serializer();
+        deserializer = entitySentimentSerde.deserializer();
+
+        Random random = new Random(42);
+        String[] entities = {"bitcoin", "ethereum"};
+        records = new EntitySentiment[RECORDS];
+        encoded = new byte[RECORDS][];
+        long bytes = 0;
+        for (int i = 0; i < RECORDS; i++) {
+            records[i] = EntitySentiment.newBuilder()
+                    .setCreatedAt(1606122120000L + i)
+                    .setId(1_330_000_000_000_000_000L + i)
+                    .setEntity(entities[i % entities.length])
+                    .setText("#bitcoin is looking super strong. #ethereum has me worried though " + i)
+                    .setSentimentScore(random.nextDouble())
+                    .setSentimentMagnitude(random.nextDouble())
+                    .setSalience(random.nextDouble())
+                    .build();
+            encoded[i] = serializer.serialize(TOPIC, records[i]);
+            bytes += encoded[i].length;
+        }
+        System.out.printf("%n%s: %d bytes/record%n", serde, bytes / RECORDS);
+    }
+
+    @Benchmark
+    public void serialize(Blackhole blackhole) {
+        for (EntitySentiment record : records) {
+            blackhole.consume(serializer.serialize(TOPIC, record));
+        }
+    }
+
+    @Benchmark
+    public void deserialize(Blackhole blackhole) {
+        for (byte[] bytes : encoded) {
+            blackhole.consume(deserializer.deserialize(TOPIC, bytes).getSentimentScore());
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.gelerion.kafka.streams.crypto.sentiment.serialization.json;
+
+import com.gelerion.kafka.streams.crypto.sentiment.serialization.Tweet;
+import com.google.gson.FieldNamingPolicy;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Compares the Gson based deserialization we used to have with the streaming {@link TweetDeserializer} on a
+ * recorded tweet sample. Both benchmarks touch the fields the same way the topology does: every tweet is checked
+ * for Retweet, and only the kept ones are branched on Lang and read their Text.
+ *
+ * ./gradlew jmh -Pjmh.includes=TweetDeserializerBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@OperationsPerInvocation(TweetDeserializerBenchmark.RECORDS)
+public class TweetDeserializerBenchmark {
+    static final int RECORDS = 1200;
+
+    private final Gson gson = new GsonBuilder()
+            .setFieldNamingPolicy(FieldNamingPolicy.UPPER_CAMEL_CASE)
+            .create();
+    private final TweetDeserializer deserializer = new TweetDeserializer();
+
+    private byte[][] records;
+
+    @Setup
+    public void setup() throws IOException {
+        List<byte[]> sample = new ArrayList<>();
+        try (InputStream in = getClass().getResourceAsStream("/tweets-sample.json");
+             BufferedReader reader = new BufferedReader(new InputStreamReader(in, UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                sample.add(line.getBytes(UTF_8));
+            }
+        }
+        records = new byte[RECORDS][];
+        for (int i = 0; i < RECORDS; i++) {
+            records[i] = sample.get(i % sample.size());
+        }
+    }
+
+    @Benchmark
+    public void gson(Blackhole blackhole) {
+        for (byte[] record : records) {
+            consume(gson.fromJson(new String(record, UTF_8), Tweet.class), blackhole);
+        }
+    }
+
+    @Benchmark
+    public void streaming(Blackhole blackhole) {
+        for (byte[] record : records) {
+            consume(deserializer.deserialize("tweets", record), blackhole);
+        }
+    }
+
+    private static void consume(Tweet tweet, Blackhole blackhole) {
+        if (tweet.isRetweet()) {
+            return;
+        }
+        blackhole.consume(tweet.getLang().equals("en"));
+        blackhole.consume(tweet.getText());
+    }
+}
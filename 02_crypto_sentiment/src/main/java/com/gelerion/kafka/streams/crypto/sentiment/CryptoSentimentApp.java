@@ -1,10 +1,16 @@
 package com.gelerion.kafka.streams.crypto.sentiment;
 
+import com.gelerion.kafka.streams.crypto.sentiment.language.CachingLanguageClient;
+import com.gelerion.kafka.streams.crypto.sentiment.language.DummyAsyncLanguageClient;
+import com.gelerion.kafka.streams.crypto.sentiment.language.Watchlist;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.streams.KafkaStreams;
 import org.apache.kafka.streams.StreamsConfig;
 import org.apache.kafka.streams.Topology;
+import org.apache.kafka.streams.state.HostInfo;
 
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.Properties;
 
 /**
@@ -16,10 +22,10 @@ import java.util.Properties;
  *         Selecting only a subset of fields to work with is referred to as projection, and is one of
  *         the most common tasks in stream processing.
  * 2. Retweets should be excluded from processing. This will involve some form of data filtering.
- * 3. Tweets that aren’t written in English should be branched into a separate stream for translating.
+ * 3. Tweets that aren’t written in English should be routed to a translator, in micro-batches per language.
  * 4. Non-English tweets need to be translated to English. This involves mapping one input value (the non-English tweet)
  *    to a new output value (an English-translated tweet).
- * 5. The newly translated tweets should be merged with the English tweets stream to create one unified stream.
+ * 5. The newly translated tweets should be emitted together with the English tweets as one unified stream.
  * 6. Each tweet should be enriched with a sentiment score, which indicates whether Twitter users are conveying
  *    positive or negative emotion when discussing certain digital currencies. Since a single tweet could mention
  *    multiple cryptocurrencies, we will demonstrate how to convert each input (tweet) into a variable number
@@ -27,24 +33,50 @@ import java.util.Properties;
  * 6. The enriched tweets should be serialized using Avro, and written to an output topic called crypto-sentiment.
  *    Our fictional trading algorithm will read from this topic and make investment decisions based
  *    on the signals it sees.
+ * 7. Per-entity sentiment statistics are aggregated over hopping and sliding windows and served over HTTP,
+ *    so that dashboards don't have to replay the crypto-sentiment topic.
  */
 public class CryptoSentimentApp {
 
     public static void main(String[] args) {
-        Topology topology = CryptoTopology.build();
+        // the entities to track, either the bundled watchlist or the file passed as the first argument
+        Watchlist watchlist = args.length > 0 ? Watchlist.load(Paths.get(args[0])) : Watchlist.load();
+
+        // stand-in for a remote NLP provider: 20ms per round trip, up to 8 concurrent requests.
+        // Duplicate texts (retweets without the flag, copy-paste bots) are served from a local cache
+        CachingLanguageClient languageClient = new CachingLanguageClient(
+                new DummyAsyncLanguageClient(watchlist, Duration.ofMillis(20), 8),
+                100_000, Duration.ofMinutes(10));
+        Topology topology = CryptoTopology.build(languageClient, watchlist);
+
+        // the windowed sentiment aggregates are served over HTTP
+        String host = "localhost";
+        int port = 8090;
+        String endpoint = String.format("%s:%s", host, port);
 
         // set the required properties for running Kafka Streams
         Properties config = new Properties();
         config.put(StreamsConfig.APPLICATION_ID_CONFIG, "dev");
         config.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:29092");
         config.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        config.put(StreamsConfig.APPLICATION_SERVER_CONFIG, endpoint);
 
         // build the topology and start streaming!
         KafkaStreams streams = new KafkaStreams(topology, config);
 
-        Runtime.getRuntime().addShutdownHook(new Thread(streams::close));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            streams.close();
+            languageClient.close();
+            System.out.println("Translation cache: " + languageClient.translationStats());
+            System.out.println("Sentiment cache: " + languageClient.sentimentStats());
+        }));
 
         System.out.println("Starting Twitter streams");
         streams.start();
+
+        // start the REST service
+        HostInfo hostInfo = new HostInfo(host, port);
+        CryptoSentimentService service = new CryptoSentimentService(hostInfo, streams);
+        service.start();
     }
 }
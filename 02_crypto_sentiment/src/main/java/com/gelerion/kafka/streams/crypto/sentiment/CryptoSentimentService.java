@@ -0,0 +1,134 @@
+package com.gelerion.kafka.streams.crypto.sentiment;
+
+import io.javalin.Javalin;
+import io.javalin.http.Context;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.KafkaStreams;
+import org.apache.kafka.streams.KeyQueryMetadata;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.StoreQueryParameters;
+import org.apache.kafka.streams.kstream.Window;
+import org.apache.kafka.streams.kstream.Windowed;
+import org.apache.kafka.streams.state.HostInfo;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.QueryableStoreTypes;
+import org.apache.kafka.streams.state.ReadOnlyWindowStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.gelerion.kafka.streams.crypto.sentiment.CryptoTopology.HOPPING_SENTIMENT_STORE;
+import static com.gelerion.kafka.streams.crypto.sentiment.CryptoTopology.SLIDING_SENTIMENT_STORE;
+
+/**
+ * Serves the windowed per-entity sentiment aggregates, e.g.
+ * GET /sentiment/hopping/bitcoin/1606122120000/1606122480000
+ */
+public class CryptoSentimentService {
+    private static final Logger log = LoggerFactory.getLogger(CryptoSentimentService.class);
+
+    private final HostInfo hostInfo;
+    private final KafkaStreams streams;
+    private final OkHttpClient client = new OkHttpClient();
+
+    public CryptoSentimentService(HostInfo hostInfo, KafkaStreams streams) {
+        this.hostInfo = hostInfo;
+        this.streams = streams;
+    }
+
+    void start() {
+        Javalin app = Javalin.create().start(hostInfo.port());
+
+        app.get("/sentiment/hopping/{entity}/{from}/{to}",
+                ctx -> getRange(ctx, HOPPING_SENTIMENT_STORE, "hopping"));
+
+        app.get("/sentiment/sliding/{entity}/{from}/{to}",
+                ctx -> getRange(ctx, SLIDING_SENTIMENT_STORE, "sliding"));
+    }
+
+    void getRange(Context ctx, String storeName, String path) {
+        String entity = ctx.pathParam("entity");
+        String from = ctx.pathParam("from");
+        String to = ctx.pathParam("to");
+
+        Instant fromTime;
+        Instant toTime;
+        try {
+            fromTime = Instant.ofEpochMilli(Long.parseLong(from));
+            toTime = Instant.ofEpochMilli(Long.parseLong(to));
+        } catch (NumberFormatException e) {
+            ctx.status(400).result("from and to must be epoch milliseconds");
+            return;
+        }
+
+        // all the windows of an entity live in the same partition, find out which host has it
+        KeyQueryMetadata metadata =
+                streams.queryMetadataForKey(storeName, entity, Serdes.String().serializer());
+        if (KeyQueryMetadata.NOT_AVAILABLE.equals(metadata)) {
+            // not running (yet), or rebalancing
+            ctx.status(503).result("the store " + storeName + " isn't available, try again later");
+            return;
+        }
+        HostInfo activeHost = metadata.activeHost();
+
+        // a remote instance has the key
+        if (!hostInfo.equals(activeHost)) {
+            String url = String.format("http://%s:%s/sentiment/%s/%s/%s/%s",
+                    activeHost.host(), activeHost.port(), path, entity, from, to);
+            Request request = new Request.Builder().url(url).build();
+
+            try (Response response = client.newCall(request).execute()) {
+                if (!response.isSuccessful()) {
+                    log.warn("Querying {} failed with status {}", url, response.code());
+                }
+                ctx.status(response.code())
+                        .contentType(response.header("Content-Type", "application/json"))
+                        .result(response.body().bytes());
+            } catch (IOException e) {
+                log.warn("Could not query {}", url, e);
+                ctx.status(502).result("could not query " + activeHost.host() + ":" + activeHost.port());
+            }
+            return;
+        }
+
+        List<Map<String, Object>> windows = new ArrayList<>();
+
+        // windows whose start time falls within [from, to]
+        KeyValueIterator<Windowed<String>, EntitySentimentStats> range =
+                getStore(storeName).fetch(entity, entity, fromTime, toTime);
+        while (range.hasNext()) {
+            KeyValue<Windowed<String>, EntitySentimentStats> next = range.next();
+            Window window = next.key.window();
+            EntitySentimentStats stats = next.value;
+
+            Map<String, Object> aggregate = new HashMap<>();
+            aggregate.put("entity", entity);
+            aggregate.put("start", Instant.ofEpochMilli(window.start()).toString());
+            aggregate.put("end", Instant.ofEpochMilli(window.end()).toString());
+            aggregate.put("count", stats.getCount());
+            aggregate.put("mean_score", stats.getMeanScore());
+            aggregate.put("min_score", stats.getMinScore());
+            aggregate.put("max_score", stats.getMaxScore());
+            aggregate.put("salience_weighted_score", stats.getSalienceWeightedScore());
+            windows.add(aggregate);
+        }
+        // close the iterator to avoid memory leaks
+        range.close();
+        // return a JSON response
+        ctx.json(windows);
+    }
+
+    private ReadOnlyWindowStore<String, EntitySentimentStats> getStore(String storeName) {
+        return streams.store(
+                StoreQueryParameters.fromNameAndType(storeName, QueryableStoreTypes.windowStore()));
+    }
+}
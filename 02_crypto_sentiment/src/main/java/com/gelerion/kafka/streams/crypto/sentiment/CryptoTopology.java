@@ -1,25 +1,91 @@
 package com.gelerion.kafka.streams.crypto.sentiment;
 
-import com.gelerion.kafka.streams.crypto.sentiment.language.DummyLanguageClient;
-import com.gelerion.kafka.streams.crypto.sentiment.language.LanguageClient;
+import com.gelerion.kafka.streams.crypto.sentiment.language.AsyncLanguageClient;
+import com.gelerion.kafka.streams.crypto.sentiment.language.CachingLanguageClient;
+import com.gelerion.kafka.streams.crypto.sentiment.language.DummyAsyncLanguageClient;
+import com.gelerion.kafka.streams.crypto.sentiment.language.Watchlist;
 import com.gelerion.kafka.streams.crypto.sentiment.model.EntitySentiment;
+import com.gelerion.kafka.streams.crypto.sentiment.processors.DeduplicationTransformer;
+import com.gelerion.kafka.streams.crypto.sentiment.processors.LanguageRouter;
+import com.gelerion.kafka.streams.crypto.sentiment.processors.OrderedAsyncTransformer;
+import com.gelerion.kafka.streams.crypto.sentiment.processors.TimeBucketedBloomFilter;
 import com.gelerion.kafka.streams.crypto.sentiment.serialization.Tweet;
 import com.gelerion.kafka.streams.crypto.sentiment.serialization.avro.AvroSerdes;
+import com.gelerion.kafka.streams.crypto.sentiment.serialization.binary.EntitySentimentStatsSerde;
 import com.gelerion.kafka.streams.crypto.sentiment.serialization.json.TweetSerdes;
+import org.apache.kafka.common.serialization.Serde;
 import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.common.utils.Bytes;
 import org.apache.kafka.streams.StreamsBuilder;
 import org.apache.kafka.streams.Topology;
 import org.apache.kafka.streams.kstream.*;
+import org.apache.kafka.streams.state.Stores;
+import org.apache.kafka.streams.state.WindowStore;
 
-import java.util.Arrays;
+import java.time.Duration;
+import java.util.Iterator;
 import java.util.List;
 
 public class CryptoTopology {
-    private static final List<String> currencies = Arrays.asList("bitcoin", "ethereum");
+    // Calls to the language provider are batched and several batches are kept in flight per task,
+    // so throughput is bounded by the provider's concurrency rather than by its round-trip latency
+    static final int LANGUAGE_BATCH_SIZE = 32;
+    static final int LANGUAGE_MAX_IN_FLIGHT = 8;
+    static final Duration LANGUAGE_LINGER = Duration.ofMillis(50);
+    // a batch the provider doesn't answer in time fails the task, rather than stalling the stream thread
+    static final Duration LANGUAGE_TIMEOUT = Duration.ofSeconds(10);
+    // translations are batched per source language, so the batches of less common languages fill up slower.
+    // Smaller batches and a longer linger trade a few milliseconds of latency for fewer, fuller calls
+    static final int TRANSLATION_BATCH_SIZE = 16;
+    static final Duration TRANSLATION_LINGER = Duration.ofMillis(100);
+
+    // Tweet ids seen during the last hour, about 1M distinct tweets per 15 minutes with 0.1% false positives.
+    // This costs ~7MB of (persistent) state per partition, regardless of the actual volume
+    static final String DEDUP_STORE = "tweet-ids";
+    static final long DEDUP_CAPACITY = 1_000_000;
+    static final double DEDUP_FALSE_POSITIVE_RATE = 0.001;
+    static final Duration DEDUP_RETENTION = Duration.ofHours(1);
+
+    // queryable per-entity sentiment aggregates, see CryptoSentimentService
+    public static final String HOPPING_SENTIMENT_STORE = "entity-sentiment-hopping";
+    public static final String SLIDING_SENTIMENT_STORE = "entity-sentiment-sliding";
+    // how long the windows can be queried for, the default of windowed aggregations
+    private static final Duration SENTIMENT_RETENTION = Duration.ofDays(1);
+    // the time difference of the sliding windows, like the size of the hopping ones
+    static final Duration SLIDING_WINDOW_SIZE = Duration.ofMinutes(5);
 
-    @SuppressWarnings({"varargs", "unchecked"})
     public static Topology build() {
-        LanguageClient languageClient = new DummyLanguageClient();
+        Watchlist watchlist = Watchlist.load();
+        return build(new CachingLanguageClient(
+                new DummyAsyncLanguageClient(watchlist, Duration.ofMillis(20), LANGUAGE_MAX_IN_FLIGHT),
+                100_000, Duration.ofMinutes(10)), watchlist);
+    }
+
+    /**
+     * @param watchlist the cryptocurrencies we are tracking, see {@link Watchlist}
+     */
+    public static Topology build(AsyncLanguageClient languageClient, Watchlist watchlist) {
+        return build(languageClient, watchlist, "http://localhost:8081");
+    }
+
+    /**
+     * @param watchlist         the cryptocurrencies we are tracking, see {@link Watchlist}
+     * @param schemaRegistryUrl where the registry-aware Avro serde registers the output schema,
+     *                          {@code mock://<scope>} for an in-memory registry
+     */
+    public static Topology build(AsyncLanguageClient languageClient, Watchlist watchlist, String schemaRegistryUrl) {
+        return build(languageClient, watchlist, schemaRegistryUrl, true, SLIDING_WINDOW_SIZE);
+    }
+
+    /**
+     * @param persistentStores  false to keep all state in memory, for benchmarks: the TopologyTestDriver commits,
+     *                          and therefore flushes RocksDB, after every single record
+     * @param slidingWindowSize the time difference of the sliding windows, {@link #SLIDING_WINDOW_SIZE} in the
+     *                          application. A mention updates every sliding window of its entity it falls in, so the
+     *                          cost per mention grows with it
+     */
+    static Topology build(AsyncLanguageClient languageClient, Watchlist watchlist, String schemaRegistryUrl,
+                          boolean persistentStores, Duration slidingWindowSize) {
         StreamsBuilder builder = new StreamsBuilder();
 
         KStream<byte[], Tweet> stream = builder.stream(
@@ -31,38 +97,38 @@ public class CryptoTopology {
         stream.print(Printed.<byte[], Tweet>toSysOut().withLabel("tweets-stream"));
 
         // Filter retweets
-        KStream<byte[], Tweet> filtered = stream.filterNot((key, tweet) -> tweet.isRetweet());
-
-        // Branching Data
-        // Branching is typically required when events need to be routed to different stream processing steps
-        // or output topics based on some attribute of the event itself.
-        Predicate<byte[], Tweet> englishTweets = (key, tweet) -> tweet.getLang().equals("en");
-        Predicate<byte[], Tweet> nonEnglishTweets = (key, tweet) -> !tweet.getLang().equals("en");
-
-        // Now that we have defined our branching conditions, we can leverage Kafka Streams’ branch operator,
-        // which accepts one or more predicates and returns a list of output streams that correspond to each predicate.
-        // Note that each predicate is evaluated in order, and a record can only be added to a single branch.
-        // If a record doesn’t match any predicate, then it will be dropped:
-        KStream<byte[], Tweet>[] branches = filtered.branch(englishTweets, nonEnglishTweets);
-
-        // English tweets
-        KStream<byte[], Tweet> englishStream = branches[0];
-        englishStream.print(Printed.<byte[], Tweet>toSysOut().withLabel("tweets-english"));
-
-        // non-English tweets
-        KStream<byte[], Tweet> nonEnglishStream = branches[1];
-        nonEnglishStream.print(Printed.<byte[], Tweet>toSysOut().withLabel("tweets-non-english"));
-
-        // Translating events
-        KStream<byte[], Tweet> translatedStream = nonEnglishStream
-                .mapValues(tweet -> languageClient.translate(tweet, "en"));
-
-        // Merging streams
-        // The equivalent of a merge in the SQL is a union query
-        // select column_name from table1
-        // union
-        // select column_name from table2
-        KStream<byte[], Tweet> merged = englishStream.merge(translatedStream);
+        KStream<byte[], Tweet> withoutRetweets = stream.filterNot((key, tweet) -> tweet.isRetweet());
+
+        // Filter duplicates
+        // The feed redelivers tweets on reconnects and upstream retries. We drop the copies before they reach the
+        // (expensive) translation and sentiment calls, by remembering the ids we have seen in a Bloom filter.
+        // The filter is per task, and the tweets are keyed by whatever the producer chose (often nothing), so they
+        // are rekeyed and repartitioned by id first: the copies of a tweet then always reach the same task.
+        // Tweets without an id can't be deduplicated nor partitioned, the repartition drops them
+        builder.addStateStore(TimeBucketedBloomFilter.storeBuilder(persistentStores
+                ? Stores.persistentKeyValueStore(DEDUP_STORE)
+                : Stores.inMemoryKeyValueStore(DEDUP_STORE)));
+        KStream<Long, Tweet> filtered = withoutRetweets
+                .selectKey((key, tweet) -> tweet.getId())
+                .repartition(Repartitioned.with(Serdes.Long(), new TweetSerdes()).withName("tweets-by-id"))
+                .transform(() -> new DeduplicationTransformer<Long, Tweet>(
+                        DEDUP_STORE, Tweet::getId, Tweet::getCreatedAt,
+                        DEDUP_CAPACITY, DEDUP_FALSE_POSITIVE_RATE, DEDUP_RETENTION), DEDUP_STORE);
+
+        // The language stages below send the records to the provider in batches, and forward the results when
+        // they come back. They are not commit-safe: a crash loses the results of the batches in flight, whose
+        // offsets may already be committed (at most a linger interval plus the provider latency of records)
+
+        // Routing by language
+        // Tweets that aren’t written in English need to be translated. Instead of branching them into a separate
+        // stream and merging the translations back, a single routing step forwards English tweets right away and
+        // groups the others into one micro-batch per language, so the translator gets one call per batch of
+        // tweets in the same language
+        KStream<Long, Tweet> english = filtered
+                .transform(() -> new LanguageRouter<Long>(
+                        "en", languageClient::translate,
+                        TRANSLATION_BATCH_SIZE, LANGUAGE_MAX_IN_FLIGHT, TRANSLATION_LINGER, LANGUAGE_TIMEOUT));
+        english.print(Printed.<Long, Tweet>toSysOut().withLabel("tweets-english"));
 
         // Enriching tweets with a sentiment score
 
@@ -74,12 +140,11 @@ public class CryptoTopology {
           {"entity": "bitcoin", "sentiment_score": 0.80}
           {"entity": "ethereum", "sentiment_score": -0.20}
          */
-        KStream<byte[], EntitySentiment> enriched = merged.flatMapValues(tweet -> {
-            List<EntitySentiment> sentiments = languageClient.getEntitySentiment(tweet);
-            // remove all entities that don’t match one of the cryptocurrencies we are tracking
-            sentiments.removeIf(sentiment -> !currencies.contains(sentiment.getEntity()));
-            return sentiments;
-        });
+        KStream<Long, EntitySentiment> enriched = english
+                .transform(() -> new OrderedAsyncTransformer<Long, Tweet, List<EntitySentiment>>(
+                        languageClient::getEntitySentiment,
+                        LANGUAGE_BATCH_SIZE, LANGUAGE_MAX_IN_FLIGHT, LANGUAGE_LINGER, LANGUAGE_TIMEOUT))
+                .flatMapValues(sentiments -> keepWatchlisted(watchlist, sentiments));
 
         // Serializing Avro Data
         // Kafka is a bytes-in, bytes-out stream processing platform. Therefore, in order to write the EntitySentiment
@@ -95,22 +160,85 @@ public class CryptoTopology {
 //        enriched.to(
 //                "crypto-sentiment",
 //                Produced.with(
-//                        Serdes.ByteArray(),
+//                        Serdes.Long(),
 //                        com.mitchseymour.kafka.serialization.avro.AvroSerdes.get(EntitySentiment.class)
 //                )
 //        );
 
         // Using schema registry
-        String schemaRegistryUrl = "http://localhost:8081";
         enriched.to(
                 "crypto-sentiment",
                 Produced.with(
-                        Serdes.ByteArray(),
+                        Serdes.Long(),
                         // registry-aware Avro Serde
                         AvroSerdes.entitySentiment(schemaRegistryUrl)
                 ));
 
+        // Windowed sentiment aggregates
+        // Instead of having every consumer of crypto-sentiment re-aggregate the raw events, we keep per-entity
+        // statistics (count, mean/min/max score, salience-weighted score) in window stores that can be queried
+        // directly. The records are rekeyed by entity, which requires a repartition. It is done explicitly, so that
+        // both aggregations share it (grouping with groupBy would repartition once per aggregation).
+        // Only this application reads the repartition topic, so it doesn't need the schema registry
+        Serde<EntitySentiment> repartitionSerde = AvroSerdes.entitySentimentFingerprinted();
+        KGroupedStream<String, EntitySentiment> byEntity = enriched
+                .selectKey((key, sentiment) -> sentiment.getEntity())
+                .repartition(Repartitioned.with(Serdes.String(), repartitionSerde).withName("entity-sentiment"))
+                .groupByKey(Grouped.with(Serdes.String(), repartitionSerde));
+
+        Initializer<EntitySentimentStats> statsInitializer = EntitySentimentStats::new;
+        Aggregator<String, EntitySentiment, EntitySentimentStats> statsAdder =
+                (entity, sentiment, stats) -> stats.add(sentiment);
+
+        // Hopping windows: the last 5 minutes, refreshed every minute
+        Duration hoppingWindowSize = Duration.ofMinutes(5);
+        TimeWindows hoppingWindow = TimeWindows.of(hoppingWindowSize)
+                .advanceBy(Duration.ofMinutes(1))
+                .grace(Duration.ofSeconds(30));
+
+        byEntity.windowedBy(hoppingWindow)
+                .aggregate(
+                        statsInitializer,
+                        statsAdder,
+                        sentimentStore(HOPPING_SENTIMENT_STORE, hoppingWindowSize, persistentStores));
+
+        // Sliding windows: the window size before each mention, aligned to the record timestamps rather than the
+        // epoch. A mention updates every window of its entity that it falls in, one per mention of the window size
+        SlidingWindows slidingWindow = SlidingWindows.withTimeDifferenceAndGrace(
+                slidingWindowSize, Duration.ofSeconds(30));
+
+        byEntity.windowedBy(slidingWindow)
+                .aggregate(
+                        statsInitializer,
+                        statsAdder,
+                        sentimentStore(SLIDING_SENTIMENT_STORE, slidingWindowSize, persistentStores));
+
         return builder.build();
     }
 
+    private static Materialized<String, EntitySentimentStats, WindowStore<Bytes, byte[]>> sentimentStore(
+            String name, Duration windowSize, boolean persistent) {
+        Materialized<String, EntitySentimentStats, WindowStore<Bytes, byte[]>> materialized = persistent
+                ? Materialized.as(name)
+                : Materialized.as(Stores.inMemoryWindowStore(name, SENTIMENT_RETENTION, windowSize, false));
+        return materialized
+                .withKeySerde(Serdes.String())
+                .withValueSerde(new EntitySentimentStatsSerde());
+    }
+
+    // remove all entities that don’t match one of the cryptocurrencies we are tracking,
+    // and report the ones we keep under their canonical name (e.g. "btc" -> "bitcoin")
+    static List<EntitySentiment> keepWatchlisted(Watchlist watchlist, List<EntitySentiment> sentiments) {
+        Iterator<EntitySentiment> iterator = sentiments.iterator();
+        while (iterator.hasNext()) {
+            EntitySentiment sentiment = iterator.next();
+            String entity = watchlist.canonical(sentiment.getEntity());
+            if (entity == null) {
+                iterator.remove();
+            } else {
+                sentiment.setEntity(entity);
+            }
+        }
+        return sentiments;
+    }
 }
@@ -0,0 +1,91 @@
+package com.gelerion.kafka.streams.crypto.sentiment;
+
+import com.gelerion.kafka.streams.crypto.sentiment.model.EntitySentiment;
+
+/**
+ * Running sentiment statistics of a single entity within a window. Only sums and extremes are stored,
+ * the averages are derived when the aggregate is read.
+ */
+public class EntitySentimentStats {
+    private long count;
+    private double scoreSum;
+    private double minScore;
+    private double maxScore;
+    private double salienceSum;
+    private double salienceWeightedScoreSum;
+
+    public EntitySentimentStats() {
+    }
+
+    /**
+     * The statistics of a serialized aggregate, see {@code EntitySentimentStatsSerde}
+     */
+    public EntitySentimentStats(long count, double scoreSum, double minScore, double maxScore,
+                                double salienceSum, double salienceWeightedScoreSum) {
+        this.count = count;
+        this.scoreSum = scoreSum;
+        this.minScore = minScore;
+        this.maxScore = maxScore;
+        this.salienceSum = salienceSum;
+        this.salienceWeightedScoreSum = salienceWeightedScoreSum;
+    }
+
+    public EntitySentimentStats add(EntitySentiment sentiment) {
+        double score = sentiment.getSentimentScore();
+        double salience = sentiment.getSalience();
+        minScore = count == 0 ? score : Math.min(minScore, score);
+        maxScore = count == 0 ? score : Math.max(maxScore, score);
+        count++;
+        scoreSum += score;
+        salienceSum += salience;
+        salienceWeightedScoreSum += salience * score;
+        return this;
+    }
+
+    public long getCount() {
+        return this.count;
+    }
+
+    public double getMeanScore() {
+        return count == 0 ? 0 : scoreSum / count;
+    }
+
+    public double getScoreSum() {
+        return this.scoreSum;
+    }
+
+    public double getMinScore() {
+        return this.minScore;
+    }
+
+    public double getMaxScore() {
+        return this.maxScore;
+    }
+
+    public double getSalienceSum() {
+        return this.salienceSum;
+    }
+
+    public double getSalienceWeightedScoreSum() {
+        return this.salienceWeightedScoreSum;
+    }
+
+    /**
+     * The mean score where each mention counts as much as the entity is salient in its tweet, i.e. a tweet that is
+     * mostly about bitcoin weighs more than one that mentions it in passing.
+     */
+    public double getSalienceWeightedScore() {
+        return salienceSum == 0 ? 0 : salienceWeightedScoreSum / salienceSum;
+    }
+
+    @Override
+    public String toString() {
+        return "{"
+                + " count='" + getCount() + "'"
+                + ", meanScore='" + getMeanScore() + "'"
+                + ", minScore='" + getMinScore() + "'"
+                + ", maxScore='" + getMaxScore() + "'"
+                + ", salienceWeightedScore='" + getSalienceWeightedScore() + "'"
+                + "}";
+    }
+}
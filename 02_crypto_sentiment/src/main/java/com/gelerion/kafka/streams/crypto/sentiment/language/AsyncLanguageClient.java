@@ -0,0 +1,24 @@
+package com.gelerion.kafka.streams.crypto.sentiment.language;
+
+import com.gelerion.kafka.streams.crypto.sentiment.model.EntitySentiment;
+import com.gelerion.kafka.streams.crypto.sentiment.serialization.Tweet;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking, batched counterpart of {@link LanguageClient}.
+ *
+ * Every call takes a batch of tweets and returns a future that completes with exactly one result per input tweet,
+ * in the same order as the input. Implementations must never block the calling (stream) thread.
+ */
+public interface AsyncLanguageClient extends AutoCloseable {
+
+    CompletableFuture<List<Tweet>> translate(List<Tweet> tweets, String targetLanguage);
+
+    CompletableFuture<List<List<EntitySentiment>>> getEntitySentiment(List<Tweet> tweets);
+
+    @Override
+    default void close() {
+    }
+}
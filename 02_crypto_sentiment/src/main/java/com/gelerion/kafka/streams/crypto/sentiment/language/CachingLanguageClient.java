@@ -0,0 +1,160 @@
+package com.gelerion.kafka.streams.crypto.sentiment.language;
+
+import com.gelerion.kafka.streams.crypto.sentiment.model.EntitySentiment;
+import com.gelerion.kafka.streams.crypto.sentiment.serialization.Tweet;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Caches translation and sentiment results in front of another {@link AsyncLanguageClient}.
+ *
+ * Viral tweets and bot spam repeat the same text over and over, so results are keyed by a 128-bit hash of
+ * (text, source language, target language) instead of by tweet. Only the cache misses of a batch are sent to the
+ * delegate, in a single (smaller) batch. Entries are evicted once the cache grows beyond {@code maximumSize} or
+ * when they are older than {@code ttl}; hit, miss and eviction counts are available through the stats methods.
+ */
+public class CachingLanguageClient implements AsyncLanguageClient {
+    private static final HashFunction HASH = Hashing.murmur3_128();
+    // sentiment is computed on the text as is, there is no target language
+    private static final String NO_TARGET = "";
+
+    private final AsyncLanguageClient delegate;
+    private final Cache<HashCode, String> translations;
+    private final Cache<HashCode, List<EntitySentiment>> sentiments;
+
+    public CachingLanguageClient(AsyncLanguageClient delegate, long maximumSize, Duration ttl) {
+        this.delegate = delegate;
+        this.translations = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.sentiments = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+    }
+
+    @Override
+    public CompletableFuture<List<Tweet>> translate(List<Tweet> tweets, String targetLanguage) {
+        List<Tweet> results = new ArrayList<>(tweets);
+        List<Tweet> misses = new ArrayList<>();
+        List<HashCode> missKeys = new ArrayList<>();
+        List<Integer> missPositions = new ArrayList<>();
+
+        for (int i = 0; i < tweets.size(); i++) {
+            Tweet tweet = tweets.get(i);
+            HashCode key = key(tweet.getText(), tweet.getLang(), targetLanguage);
+            String translated = translations.getIfPresent(key);
+            if (translated != null) {
+                tweet.setText(translated);
+            } else {
+                misses.add(tweet);
+                missKeys.add(key);
+                missPositions.add(i);
+            }
+        }
+
+        if (misses.isEmpty()) {
+            return CompletableFuture.completedFuture(results);
+        }
+
+        return delegate.translate(misses, targetLanguage).thenApply(translated -> {
+            for (int i = 0; i < translated.size(); i++) {
+                Tweet tweet = translated.get(i);
+                translations.put(missKeys.get(i), tweet.getText());
+                results.set(missPositions.get(i), tweet);
+            }
+            return results;
+        });
+    }
+
+    @Override
+    public CompletableFuture<List<List<EntitySentiment>>> getEntitySentiment(List<Tweet> tweets) {
+        List<List<EntitySentiment>> results = new ArrayList<>(tweets.size());
+        List<Tweet> misses = new ArrayList<>();
+        List<HashCode> missKeys = new ArrayList<>();
+        List<Integer> missPositions = new ArrayList<>();
+
+        for (int i = 0; i < tweets.size(); i++) {
+            Tweet tweet = tweets.get(i);
+            HashCode key = key(tweet.getText(), tweet.getLang(), NO_TARGET);
+            List<EntitySentiment> cached = sentiments.getIfPresent(key);
+            if (cached != null) {
+                results.add(forTweet(cached, tweet));
+            } else {
+                results.add(null);
+                misses.add(tweet);
+                missKeys.add(key);
+                missPositions.add(i);
+            }
+        }
+
+        if (misses.isEmpty()) {
+            return CompletableFuture.completedFuture(results);
+        }
+
+        return delegate.getEntitySentiment(misses).thenApply(scored -> {
+            for (int i = 0; i < scored.size(); i++) {
+                List<EntitySentiment> entities = scored.get(i);
+                // downstream operators are free to modify the returned records, so we keep our own copies
+                ImmutableList.Builder<EntitySentiment> copies = ImmutableList.builder();
+                for (EntitySentiment entity : entities) {
+                    copies.add(EntitySentiment.newBuilder(entity).build());
+                }
+                sentiments.put(missKeys.get(i), copies.build());
+                results.set(missPositions.get(i), entities);
+            }
+            return results;
+        });
+    }
+
+    // the scores only depend on the text, the tweet specific fields are taken from the tweet at hand
+    private static List<EntitySentiment> forTweet(List<EntitySentiment> cached, Tweet tweet) {
+        List<EntitySentiment> entities = new ArrayList<>(cached.size());
+        for (EntitySentiment entity : cached) {
+            entities.add(EntitySentiment.newBuilder(entity)
+                    .setCreatedAt(tweet.getCreatedAt())
+                    .setId(tweet.getId())
+                    .setText(tweet.getText())
+                    .build());
+        }
+        return entities;
+    }
+
+    private static HashCode key(String text, String sourceLanguage, String targetLanguage) {
+        return HASH.newHasher()
+                .putString(text, StandardCharsets.UTF_8)
+                // a separator, so that ("ab", "c") and ("a", "bc") hash differently
+                .putByte((byte) 0)
+                .putString(String.valueOf(sourceLanguage), StandardCharsets.UTF_8)
+                .putByte((byte) 0)
+                .putString(targetLanguage, StandardCharsets.UTF_8)
+                .hash();
+    }
+
+    public CacheStats translationStats() {
+        return translations.stats();
+    }
+
+    public CacheStats sentimentStats() {
+        return sentiments.stats();
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+}
@@ -0,0 +1,80 @@
+package com.gelerion.kafka.streams.crypto.sentiment.language;
+
+import com.gelerion.kafka.streams.crypto.sentiment.model.EntitySentiment;
+import com.gelerion.kafka.streams.crypto.sentiment.serialization.Tweet;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Local stand-in for a remote NLP provider. Every batch costs one round trip of {@code latency}, and at most
+ * {@code concurrency} batches are served at the same time, which is roughly how a hosted translation or sentiment
+ * API behaves. This lets us measure the effect of batching and in-flight requests without network access.
+ */
+public class DummyAsyncLanguageClient extends DummyLanguageClient implements AsyncLanguageClient {
+    private final long latencyMs;
+    private final ExecutorService provider;
+
+    public DummyAsyncLanguageClient(Duration latency, int concurrency) {
+        this(Watchlist.load(), latency, concurrency);
+    }
+
+    public DummyAsyncLanguageClient(Watchlist watchlist, Duration latency, int concurrency) {
+        super(watchlist);
+        this.latencyMs = latency.toMillis();
+        this.provider = Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "dummy-language-provider");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public CompletableFuture<List<Tweet>> translate(List<Tweet> tweets, String targetLanguage) {
+        return roundTrip(() -> {
+            List<Tweet> results = new ArrayList<>(tweets.size());
+            for (Tweet tweet : tweets) {
+                results.add(translate(tweet, targetLanguage));
+            }
+            return results;
+        });
+    }
+
+    @Override
+    public CompletableFuture<List<List<EntitySentiment>>> getEntitySentiment(List<Tweet> tweets) {
+        return roundTrip(() -> {
+            List<List<EntitySentiment>> results = new ArrayList<>(tweets.size());
+            for (Tweet tweet : tweets) {
+                results.add(getEntitySentiment(tweet));
+            }
+            return results;
+        });
+    }
+
+    private <T> CompletableFuture<T> roundTrip(Supplier<T> call) {
+        return CompletableFuture.supplyAsync(() -> {
+            simulateLatency();
+            return call.get();
+        }, provider);
+    }
+
+    private void simulateLatency() {
+        if (latencyMs <= 0) return;
+        try {
+            TimeUnit.MILLISECONDS.sleep(latencyMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        provider.shutdownNow();
+    }
+}
@@ -2,13 +2,21 @@ package com.gelerion.kafka.streams.crypto.sentiment.language;
 
 import com.gelerion.kafka.streams.crypto.sentiment.model.EntitySentiment;
 import com.gelerion.kafka.streams.crypto.sentiment.serialization.Tweet;
-import com.google.common.base.Splitter;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ThreadLocalRandom;
 
 public class DummyLanguageClient implements LanguageClient {
+    private final Watchlist watchlist;
+
+    public DummyLanguageClient() {
+        this(Watchlist.load());
+    }
+
+    public DummyLanguageClient(Watchlist watchlist) {
+        this.watchlist = watchlist;
+    }
 
     @Override
     public Tweet translate(Tweet tweet, String targetLanguage) {
@@ -18,12 +26,17 @@ public class DummyLanguageClient implements LanguageClient {
 
     @Override
     public List<EntitySentiment> getEntitySentiment(Tweet tweet) {
-        List<EntitySentiment> results = new ArrayList<>();
-
-        Iterable<String> words = Splitter.on(' ')
-                .split(tweet.getText().toLowerCase().replace("#", ""));
-
-        for (String entity : words) {
+        // a real provider recognises entities on its own, we pretend by looking for the watchlisted ones
+        List<String> entities = new ArrayList<>();
+        watchlist.find(tweet.getText(), (entity, start, end) -> {
+            String name = watchlist.entity(entity);
+            if (!entities.contains(name)) {
+                entities.add(name);
+            }
+        });
+
+        List<EntitySentiment> results = new ArrayList<>(entities.size());
+        for (String entity : entities) {
             EntitySentiment entitySentiment =
                     EntitySentiment.newBuilder()
                             .setCreatedAt(tweet.getCreatedAt())
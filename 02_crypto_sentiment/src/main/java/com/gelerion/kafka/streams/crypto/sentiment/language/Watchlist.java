@@ -0,0 +1,291 @@
+package com.gelerion.kafka.streams.crypto.sentiment.language;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * The entities (tickers, coins, projects) we track, together with their aliases, compiled into a single
+ * Aho-Corasick automaton.
+ *
+ * The automaton finds every alias in a text in one pass, no matter how many aliases there are, and it neither
+ * tokenizes nor lowercases the text: characters are case-folded one at a time while walking the automaton, so
+ * matching does not allocate. An alias that starts (or ends) with a latin letter or a digit only matches on a word
+ * boundary, e.g. "eth" matches "#eth" and "$eth", but not "method". Scripts without spaces between words (e.g.
+ * Japanese) are matched anywhere.
+ *
+ * Watchlist file format, one entity per line, the entity name being an alias of itself:
+ * <pre>
+ * # comment
+ * bitcoin: btc, xbt
+ * ethereum: eth, ether
+ * </pre>
+ */
+public class Watchlist {
+    private static final String DEFAULT_RESOURCE = "/watchlist.txt";
+    private static final int ROOT = 0;
+
+    @FunctionalInterface
+    public interface MatchHandler {
+        /**
+         * @param entity the id of the matched entity, see {@link #entity(int)}
+         * @param start  the index of the first matched character
+         * @param end    the index after the last matched character
+         */
+        void onMatch(int entity, int start, int end);
+    }
+
+    private final String[] entities;
+
+    // alphabet: every (case-folded) character used by an alias gets its own class, everything else is class 0
+    private final int[] asciiClasses = new int[128];
+    private final char[] otherChars;
+    private final int alphabetSize;
+
+    // automaton, one entry per state
+    private final int[] transitions;
+    private final int[] matchedEntity;
+    private final int[] outputLink;
+    private final int[] depth;
+    private final boolean[] leftBoundary;
+    private final boolean[] rightBoundary;
+
+    private Watchlist(Map<String, ? extends Collection<String>> aliasesByEntity) {
+        this.entities = aliasesByEntity.keySet().toArray(new String[0]);
+
+        // 1. alphabet
+        SortedSet<Character> others = new TreeSet<>();
+        int nextClass = 1;
+        for (int id = 0; id < entities.length; id++) {
+            for (String alias : aliasesOf(entities[id], aliasesByEntity)) {
+                for (int i = 0; i < alias.length(); i++) {
+                    char c = fold(alias.charAt(i));
+                    if (c < 128) {
+                        if (asciiClasses[c] == 0) asciiClasses[c] = nextClass++;
+                    } else {
+                        others.add(c);
+                    }
+                }
+            }
+        }
+        this.otherChars = new char[others.size()];
+        int index = 0;
+        for (Character c : others) {
+            otherChars[index++] = c;
+        }
+        this.alphabetSize = nextClass + otherChars.length;
+
+        // 2. trie
+        List<int[]> children = new ArrayList<>();
+        List<Integer> entityOfState = new ArrayList<>();
+        List<Integer> depthOfState = new ArrayList<>();
+        List<Boolean> left = new ArrayList<>();
+        List<Boolean> right = new ArrayList<>();
+        children.add(new int[alphabetSize]);
+        entityOfState.add(-1);
+        depthOfState.add(0);
+        left.add(false);
+        right.add(false);
+
+        for (int id = 0; id < entities.length; id++) {
+            for (String alias : aliasesOf(entities[id], aliasesByEntity)) {
+                int state = ROOT;
+                for (int i = 0; i < alias.length(); i++) {
+                    int c = classOf(alias.charAt(i));
+                    if (children.get(state)[c] == 0) {
+                        children.get(state)[c] = children.size();
+                        children.add(new int[alphabetSize]);
+                        entityOfState.add(-1);
+                        depthOfState.add(i + 1);
+                        left.add(false);
+                        right.add(false);
+                    }
+                    state = children.get(state)[c];
+                }
+                Integer existing = entityOfState.get(state);
+                if (existing >= 0 && existing != id) {
+                    throw new IllegalArgumentException(
+                            "Alias '" + alias + "' is used by both " + entities[existing] + " and " + entities[id]);
+                }
+                entityOfState.set(state, id);
+                left.set(state, isLatinAlphanumeric(alias.charAt(0)));
+                right.set(state, isLatinAlphanumeric(alias.charAt(alias.length() - 1)));
+            }
+        }
+
+        int states = children.size();
+        this.transitions = new int[states * alphabetSize];
+        this.matchedEntity = new int[states];
+        this.outputLink = new int[states];
+        this.depth = new int[states];
+        this.leftBoundary = new boolean[states];
+        this.rightBoundary = new boolean[states];
+        for (int state = 0; state < states; state++) {
+            matchedEntity[state] = entityOfState.get(state);
+            depth[state] = depthOfState.get(state);
+            leftBoundary[state] = left.get(state);
+            rightBoundary[state] = right.get(state);
+        }
+
+        // 3. failure links, breadth first, folded into a complete transition table (i.e. a DFA)
+        int[] failure = new int[states];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int c = 0; c < alphabetSize; c++) {
+            int child = children.get(ROOT)[c];
+            transitions[c] = child;
+            if (child != ROOT) {
+                failure[child] = ROOT;
+                queue.add(child);
+            }
+        }
+        outputLink[ROOT] = -1;
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            int fail = failure[state];
+            outputLink[state] = matchedEntity[fail] >= 0 ? fail : outputLink[fail];
+            for (int c = 0; c < alphabetSize; c++) {
+                int child = children.get(state)[c];
+                if (child != ROOT) {
+                    failure[child] = transitions[fail * alphabetSize + c];
+                    transitions[state * alphabetSize + c] = child;
+                    queue.add(child);
+                } else {
+                    transitions[state * alphabetSize + c] = transitions[fail * alphabetSize + c];
+                }
+            }
+        }
+    }
+
+    public static Watchlist of(Map<String, ? extends Collection<String>> aliasesByEntity) {
+        return new Watchlist(aliasesByEntity);
+    }
+
+    /**
+     * Loads the watchlist that ships with the application.
+     */
+    public static Watchlist load() {
+        try (InputStream in = Watchlist.class.getResourceAsStream(DEFAULT_RESOURCE)) {
+            if (in == null) {
+                throw new IllegalStateException("Watchlist " + DEFAULT_RESOURCE + " not found on the classpath");
+            }
+            return parse(new InputStreamReader(in, UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static Watchlist load(Path file) {
+        try (Reader reader = Files.newBufferedReader(file, UTF_8)) {
+            return parse(reader);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static Watchlist parse(Reader reader) throws IOException {
+        Map<String, List<String>> aliasesByEntity = new LinkedHashMap<>();
+        BufferedReader lines = new BufferedReader(reader);
+        String line;
+        while ((line = lines.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            int colon = line.indexOf(':');
+            String entity = (colon < 0 ? line : line.substring(0, colon)).trim().toLowerCase(Locale.ROOT);
+            List<String> aliases = aliasesByEntity.computeIfAbsent(entity, e -> new ArrayList<>());
+            if (colon >= 0) {
+                for (String alias : line.substring(colon + 1).split(",")) {
+                    if (!alias.trim().isEmpty()) {
+                        aliases.add(alias.trim());
+                    }
+                }
+            }
+        }
+        return new Watchlist(aliasesByEntity);
+    }
+
+    /**
+     * Reports every watchlisted alias found in the text, in the order in which the matches end.
+     */
+    public void find(CharSequence text, MatchHandler handler) {
+        int state = ROOT;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            state = transitions[state * alphabetSize + classOf(text.charAt(i))];
+            // every alias that ends here: the one of the current state and those reachable through the output links
+            int match = matchedEntity[state] >= 0 ? state : outputLink[state];
+            for (; match > ROOT; match = outputLink[match]) {
+                int start = i - depth[match] + 1;
+                if (leftBoundary[match] && start > 0 && isWordChar(text.charAt(start - 1))) continue;
+                if (rightBoundary[match] && i + 1 < length && isWordChar(text.charAt(i + 1))) continue;
+                handler.onMatch(matchedEntity[match], start, i + 1);
+            }
+        }
+    }
+
+    /**
+     * Resolves a name (e.g. an entity returned by a sentiment provider) to the entity it is an alias of.
+     *
+     * @return the canonical entity name or null if the name is not on the watchlist
+     */
+    public String canonical(CharSequence name) {
+        int state = ROOT;
+        for (int i = 0; i < name.length(); i++) {
+            state = transitions[state * alphabetSize + classOf(name.charAt(i))];
+        }
+        // the automaton may have fallen back to a suffix of the name, so the whole name must have been matched
+        if (matchedEntity[state] >= 0 && depth[state] == name.length()) {
+            return entities[matchedEntity[state]];
+        }
+        return null;
+    }
+
+    public String entity(int id) {
+        return entities[id];
+    }
+
+    public int size() {
+        return entities.length;
+    }
+
+    private int classOf(char c) {
+        char folded = fold(c);
+        if (folded < 128) {
+            return asciiClasses[folded];
+        }
+        int index = Arrays.binarySearch(otherChars, folded);
+        return index < 0 ? 0 : alphabetSize - otherChars.length + index;
+    }
+
+    private static List<String> aliasesOf(String entity, Map<String, ? extends Collection<String>> aliasesByEntity) {
+        List<String> aliases = new ArrayList<>();
+        aliases.add(entity);
+        for (String alias : aliasesByEntity.get(entity)) {
+            if (!alias.isEmpty() && !alias.equalsIgnoreCase(entity)) {
+                aliases.add(alias);
+            }
+        }
+        return aliases;
+    }
+
+    private static char fold(char c) {
+        return Character.toLowerCase(c);
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+    private static boolean isLatinAlphanumeric(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+    }
+}
@@ -0,0 +1,72 @@
+package com.gelerion.kafka.streams.crypto.sentiment.processors;
+
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.kstream.Transformer;
+import org.apache.kafka.streams.processor.ProcessorContext;
+import org.apache.kafka.streams.state.KeyValueStore;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * Drops records whose id has already been seen, using a {@link TimeBucketedBloomFilter}.
+ *
+ * Duplicates carry the same event time (e.g. the creation time of a tweet), so the id is only looked up in the
+ * bucket of that event time. A false positive drops a record that was in fact new, with the probability configured
+ * for the filter. Records without an id or an event time, records older than the retention, and records whose event
+ * time is far ahead of the stream time (the latest record timestamp of the task), are always kept.
+ *
+ * The filter is local to the task, so the records must be partitioned by id, or the copies of a record may be
+ * processed by different tasks and never meet.
+ */
+public class DeduplicationTransformer<K, V> implements Transformer<K, V, KeyValue<K, V>> {
+    private final String storeName;
+    private final Function<V, Long> idExtractor;
+    private final Function<V, Long> eventTimeExtractor;
+    private final long capacity;
+    private final double falsePositiveRate;
+    private final Duration retention;
+
+    private ProcessorContext context;
+    private TimeBucketedBloomFilter seen;
+    private long observedStreamTime = -1L;
+
+    /**
+     * @param storeName the name of a store built with {@link TimeBucketedBloomFilter#storeBuilder(String)}
+     * @param capacity  the expected number of distinct ids per quarter of the retention
+     */
+    public DeduplicationTransformer(String storeName, Function<V, Long> idExtractor, Function<V, Long> eventTimeExtractor,
+                                    long capacity, double falsePositiveRate, Duration retention) {
+        this.storeName = storeName;
+        this.idExtractor = idExtractor;
+        this.eventTimeExtractor = eventTimeExtractor;
+        this.capacity = capacity;
+        this.falsePositiveRate = falsePositiveRate;
+        this.retention = retention;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void init(ProcessorContext context) {
+        this.context = context;
+        KeyValueStore<Long, byte[]> store = (KeyValueStore<Long, byte[]>) context.getStateStore(storeName);
+        this.seen = new TimeBucketedBloomFilter(store, capacity, falsePositiveRate, retention);
+    }
+
+    @Override
+    public KeyValue<K, V> transform(K key, V value) {
+        Long id = idExtractor.apply(value);
+        Long eventTime = eventTimeExtractor.apply(value);
+        observedStreamTime = Math.max(observedStreamTime, context.timestamp());
+        if (id != null && eventTime != null && seen.add(id, eventTime, observedStreamTime)) {
+            // a duplicate, drop it
+            return null;
+        }
+        return KeyValue.pair(key, value);
+    }
+
+    @Override
+    public void close() {
+        // the store is closed by Kafka Streams
+    }
+}
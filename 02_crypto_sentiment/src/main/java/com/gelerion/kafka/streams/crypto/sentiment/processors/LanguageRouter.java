@@ -0,0 +1,59 @@
+package com.gelerion.kafka.streams.crypto.sentiment.processors;
+
+import com.gelerion.kafka.streams.crypto.sentiment.serialization.Tweet;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.kstream.Transformer;
+import org.apache.kafka.streams.processor.ProcessorContext;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiFunction;
+
+/**
+ * Routes tweets by language: tweets that are already in the target language are forwarded as they are, all the
+ * others are grouped into one micro-batch per source language and translated in a single call per batch.
+ *
+ * A batch is sent once it holds {@code batchSize} tweets, or after at most {@code linger} when the language is
+ * less common; larger batches amortize the per-call overhead of the translator, a shorter linger keeps the added
+ * latency low. The translated tweets are emitted when their batch completes, at the latest after one linger interval
+ * plus the translator latency, or when the router is closed; see {@link OrderedAsyncTransformer} for what a crash in
+ * between loses.
+ * English tweets don't wait for the translations, so the output is only in offset order per language.
+ */
+public class LanguageRouter<K> implements Transformer<K, Tweet, KeyValue<K, Tweet>> {
+    private final String targetLanguage;
+    private final OrderedAsyncTransformer<K, Tweet, Tweet> translator;
+
+    /**
+     * @param translate translates a batch of tweets, all in the same language, to the target language
+     * @param timeout   how long the stream thread waits for a batch, before the task fails
+     */
+    public LanguageRouter(String targetLanguage,
+                          BiFunction<List<Tweet>, String, CompletableFuture<List<Tweet>>> translate,
+                          int batchSize, int maxInFlight, Duration linger, Duration timeout) {
+        this.targetLanguage = targetLanguage;
+        this.translator = new OrderedAsyncTransformer<>(
+                tweets -> translate.apply(tweets, targetLanguage), Tweet::getLang,
+                batchSize, maxInFlight, linger, timeout);
+    }
+
+    @Override
+    public void init(ProcessorContext context) {
+        // the translator forwards the translated tweets to our children
+        translator.init(context);
+    }
+
+    @Override
+    public KeyValue<K, Tweet> transform(K key, Tweet tweet) {
+        if (targetLanguage.equals(tweet.getLang())) {
+            return KeyValue.pair(key, tweet);
+        }
+        return translator.transform(key, tweet);
+    }
+
+    @Override
+    public void close() {
+        translator.close();
+    }
+}
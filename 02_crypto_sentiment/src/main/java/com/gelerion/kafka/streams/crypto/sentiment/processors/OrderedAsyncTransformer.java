@@ -0,0 +1,189 @@
+package com.gelerion.kafka.streams.crypto.sentiment.processors;
+
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.errors.StreamsException;
+import org.apache.kafka.streams.kstream.Transformer;
+import org.apache.kafka.streams.processor.ProcessorContext;
+import org.apache.kafka.streams.processor.PunctuationType;
+import org.apache.kafka.streams.processor.To;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * Sends values to an asynchronous, batched service without blocking the stream thread on every record.
+ *
+ * Records are collected into batches of up to {@code batchSize}. Each full batch (or a partial batch once the
+ * {@code linger} interval elapses) is handed to the service, and up to {@code maxInFlight} batches may be
+ * outstanding per task. Results are always forwarded in the order the records arrived (i.e. offset order), even if a later batch
+ * completes first: we only ever emit from the head of the in-flight queue. When the queue is full, the stream thread
+ * waits for the oldest batch, which is what keeps the amount of buffered work bounded.
+ *
+ * Records can also be batched by a key derived from the value (e.g. the language of a text, when the service wants
+ * homogeneous batches). There is then one pending batch per key, and the order is only kept among the records of the
+ * same batch key.
+ *
+ * Every {@code linger} interval (wall-clock time), the partial batches are sent, and the stream thread waits for
+ * every batch in flight and forwards its results. The same happens on close. Kafka Streams has no public hook before
+ * a commit though, so this stage isn't commit-safe: the offsets of records whose batch is still pending or in flight
+ * may be committed, and a crash then loses their results (at most about one linger interval of records, plus the
+ * provider latency). A batch that doesn't complete within {@code timeout} fails the task, instead of blocking the
+ * stream thread, and its commits, indefinitely.
+ */
+public class OrderedAsyncTransformer<K, V, VR> implements Transformer<K, V, KeyValue<K, VR>> {
+    private static final Object SINGLE_BATCH = new Object();
+
+    private final Function<List<V>, CompletableFuture<List<VR>>> service;
+    private final Function<V, ?> batchKey;
+    private final int batchSize;
+    private final int maxInFlight;
+    private final Duration linger;
+    private final Duration timeout;
+
+    private final ArrayDeque<Batch<K, V, VR>> inFlight = new ArrayDeque<>();
+    private final Map<Object, Batch<K, V, VR>> pending = new LinkedHashMap<>();
+    private ProcessorContext context;
+
+    /**
+     * @param timeout how long the stream thread waits for a batch, before the task fails
+     */
+    public OrderedAsyncTransformer(Function<List<V>, CompletableFuture<List<VR>>> service,
+                                   int batchSize, int maxInFlight, Duration linger, Duration timeout) {
+        this(service, value -> SINGLE_BATCH, batchSize, maxInFlight, linger, timeout);
+    }
+
+    /**
+     * @param batchKey only records with equal batch keys are sent to the service in the same batch
+     * @param timeout  how long the stream thread waits for a batch, before the task fails
+     */
+    public OrderedAsyncTransformer(Function<List<V>, CompletableFuture<List<VR>>> service, Function<V, ?> batchKey,
+                                   int batchSize, int maxInFlight, Duration linger, Duration timeout) {
+        if (batchSize < 1 || maxInFlight < 1) {
+            throw new IllegalArgumentException("batchSize and maxInFlight must be positive");
+        }
+        this.service = service;
+        this.batchKey = batchKey;
+        this.batchSize = batchSize;
+        this.maxInFlight = maxInFlight;
+        this.linger = linger;
+        this.timeout = timeout;
+    }
+
+    @Override
+    public void init(ProcessorContext context) {
+        this.context = context;
+        // send the partial batches and forward every batch in flight, even when no new records arrive
+        this.context.schedule(linger, PunctuationType.WALL_CLOCK_TIME, timestamp -> drain());
+    }
+
+    @Override
+    public KeyValue<K, VR> transform(K key, V value) {
+        Object batchKey = this.batchKey.apply(value);
+        Batch<K, V, VR> batch = pending.get(batchKey);
+        if (batch == null) {
+            batch = new Batch<>(batchSize);
+            pending.put(batchKey, batch);
+        }
+        batch.add(key, value, context.timestamp());
+        if (batch.size() >= batchSize) {
+            pending.remove(batchKey);
+            submit(batch);
+        }
+        forwardCompleted();
+        // results are forwarded explicitly, once they are available
+        return null;
+    }
+
+    // a partial batch never waits longer than one linger interval, nor a batch in flight its results
+    private void drain() {
+        Iterator<Batch<K, V, VR>> batches = pending.values().iterator();
+        while (batches.hasNext()) {
+            Batch<K, V, VR> batch = batches.next();
+            batches.remove();
+            submit(batch);
+        }
+        while (!inFlight.isEmpty()) {
+            forward(inFlight.poll());
+        }
+    }
+
+    private void submit(Batch<K, V, VR> batch) {
+        // back-pressure: never keep more than maxInFlight batches outstanding
+        while (inFlight.size() >= maxInFlight) {
+            forward(inFlight.poll());
+        }
+        batch.result = service.apply(batch.values);
+        inFlight.add(batch);
+    }
+
+    private void forwardCompleted() {
+        while (!inFlight.isEmpty() && inFlight.peek().result.isDone()) {
+            forward(inFlight.poll());
+        }
+    }
+
+    private void forward(Batch<K, V, VR> batch) {
+        List<VR> results;
+        try {
+            results = batch.result.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw new StreamsException("Asynchronous call failed for a batch of " + batch.size() + " records", e.getCause());
+        } catch (TimeoutException e) {
+            batch.result.cancel(true);
+            throw new StreamsException("Asynchronous call for a batch of " + batch.size() + " records didn't complete"
+                    + " within " + timeout, e);
+        } catch (CancellationException e) {
+            throw new StreamsException("Asynchronous call for a batch of " + batch.size() + " records was cancelled",
+                    e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StreamsException("Interrupted while waiting for a batch of " + batch.size() + " records", e);
+        }
+        if (results.size() != batch.size()) {
+            throw new StreamsException("Expected " + batch.size() + " results, but got " + results.size());
+        }
+        for (int i = 0; i < results.size(); i++) {
+            context.forward(batch.keys.get(i), results.get(i), To.all().withTimestamp(batch.timestamps[i]));
+        }
+    }
+
+    @Override
+    public void close() {
+        // the children are still open, forward what is left instead of dropping it
+        drain();
+    }
+
+    private static final class Batch<K, V, VR> {
+        private final List<K> keys;
+        private final List<V> values;
+        private final long[] timestamps;
+        private CompletableFuture<List<VR>> result;
+
+        Batch(int capacity) {
+            this.keys = new ArrayList<>(capacity);
+            this.values = new ArrayList<>(capacity);
+            this.timestamps = new long[capacity];
+        }
+
+        void add(K key, V value, long timestamp) {
+            timestamps[values.size()] = timestamp;
+            keys.add(key);
+            values.add(value);
+        }
+
+        int size() {
+            return values.size();
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.gelerion.kafka.streams.crypto.sentiment.processors;
+
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.state.KeyValueBytesStoreSupplier;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.StoreBuilder;
+import org.apache.kafka.streams.state.Stores;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A Bloom filter over a sliding time range, kept in a persistent key-value store so that it survives restarts and
+ * is restored from the store's changelog when a task moves to another instance.
+ *
+ * The retention is split into {@link #BUCKETS} time buckets with a filter each; an item is added to the filter of
+ * the bucket its timestamp falls into, and the oldest bucket is deleted once a newer one starts. An item is therefore
+ * remembered for at least 3/4 of the retention and at most the whole retention. Each filter is sized for
+ * {@code capacity} items at the given false positive rate. Only the buckets up to the one after the bucket of the
+ * stream time are started, so a timestamp far in the future (e.g. from a wrong clock) can't expire the others.
+ *
+ * The filters are blocked Bloom filters: all the bits of an item live in the same 512 bit (64 byte) block, so a
+ * lookup reads one entry of the store and an insert writes one. The store is keyed by (bucket, block) and is meant
+ * to have caching enabled, see {@link #storeBuilder(String)}, which coalesces the writes to the same block between
+ * two commits into a single changelog record.
+ */
+public class TimeBucketedBloomFilter {
+    static final int BUCKETS = 4;
+    private static final int BLOCK_BITS = 512;
+    private static final int BLOCK_BYTES = BLOCK_BITS / 8;
+    private static final int MAX_HASHES = 16;
+
+    private final KeyValueStore<Long, byte[]> store;
+    private final long bucketSizeMs;
+    private final int blocksPerBucket;
+    private final int hashes;
+
+    private long latestBucket = Long.MIN_VALUE;
+
+    public TimeBucketedBloomFilter(KeyValueStore<Long, byte[]> store,
+                                   long capacity, double falsePositiveRate, Duration retention) {
+        if (capacity < 1 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("capacity must be positive and falsePositiveRate within (0, 1)");
+        }
+        if (retention.toMillis() < BUCKETS) {
+            throw new IllegalArgumentException("retention is too short: " + retention);
+        }
+        this.store = store;
+        this.bucketSizeMs = retention.toMillis() / BUCKETS;
+
+        // the usual Bloom filter sizing, rounded up to whole blocks
+        double bits = -capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+        this.blocksPerBucket = (int) Math.min(Integer.MAX_VALUE, (long) Math.ceil(bits / BLOCK_BITS));
+        double bitsPerItem = (double) blocksPerBucket * BLOCK_BITS / capacity;
+        this.hashes = (int) Math.max(1, Math.min(MAX_HASHES, Math.round(bitsPerItem * Math.log(2))));
+    }
+
+    /**
+     * A persistent (RocksDB) store with caching and a changelog topic, as expected by this filter.
+     */
+    public static StoreBuilder<KeyValueStore<Long, byte[]>> storeBuilder(String name) {
+        return storeBuilder(Stores.persistentKeyValueStore(name));
+    }
+
+    public static StoreBuilder<KeyValueStore<Long, byte[]>> storeBuilder(KeyValueBytesStoreSupplier supplier) {
+        return Stores.keyValueStoreBuilder(supplier, Serdes.Long(), Serdes.ByteArray())
+                .withCachingEnabled();
+    }
+
+    /**
+     * Adds the item to the filter of the bucket that {@code timestamp} falls into.
+     *
+     * @param streamTime the latest record timestamp of the task, which bounds the buckets started
+     * @return true if the item has (probably) been added before, false if it is new, or if its bucket has already
+     *         expired or is more than a bucket ahead of the stream time (i.e. we can't tell). Timestamps before the
+     *         epoch are not tracked
+     */
+    public boolean add(long item, long timestamp, long streamTime) {
+        long bucket = Math.floorDiv(timestamp, bucketSizeMs);
+        if (bucket < 0) {
+            return false;
+        }
+        if (bucket > latestBucket) {
+            if (bucket > Math.floorDiv(streamTime, bucketSizeMs) + 1) {
+                return false;
+            }
+            latestBucket = bucket;
+            expireBefore(bucket - BUCKETS + 1);
+        } else if (bucket <= latestBucket - BUCKETS) {
+            return false;
+        }
+
+        long hash = mix(item);
+        int block = (int) ((hash >>> 1) % blocksPerBucket);
+        long bitHash = mix(hash);
+        int h1 = (int) bitHash;
+        int h2 = (int) (bitHash >>> 32) | 1;
+
+        Long key = key(bucket, block);
+        byte[] bits = store.get(key);
+        if (bits != null && allSet(bits, h1, h2)) {
+            return true;
+        }
+
+        // never modify the array returned by the store in place, it may be the one held by the record cache
+        byte[] updated = bits == null ? new byte[BLOCK_BYTES] : bits.clone();
+        for (int i = 0; i < hashes; i++) {
+            int bit = (h1 + i * h2) & (BLOCK_BITS - 1);
+            updated[bit >>> 3] |= (byte) (1 << (bit & 7));
+        }
+        store.put(key, updated);
+        return false;
+    }
+
+    private boolean allSet(byte[] bits, int h1, int h2) {
+        for (int i = 0; i < hashes; i++) {
+            int bit = (h1 + i * h2) & (BLOCK_BITS - 1);
+            if ((bits[bit >>> 3] & (1 << (bit & 7))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void expireBefore(long bucket) {
+        if (bucket <= 0) {
+            return;
+        }
+        // the keys are non-negative longs, so their (big-endian) serialized order is the numeric order
+        List<Long> expired = new ArrayList<>();
+        try (KeyValueIterator<Long, byte[]> range = store.range(0L, key(bucket, 0) - 1)) {
+            while (range.hasNext()) {
+                KeyValue<Long, byte[]> next = range.next();
+                expired.add(next.key);
+            }
+        }
+        for (Long key : expired) {
+            store.delete(key);
+        }
+    }
+
+    private static long key(long bucket, int block) {
+        return (bucket << 32) | block;
+    }
+
+    // the finalizer of SplitMix64, spreads the bits of sequential ids over the whole word
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
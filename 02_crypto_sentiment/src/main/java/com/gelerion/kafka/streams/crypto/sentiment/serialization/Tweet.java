@@ -1,5 +1,6 @@
 package com.gelerion.kafka.streams.crypto.sentiment.serialization;
 
+import com.gelerion.kafka.streams.crypto.sentiment.serialization.json.JsonStrings;
 import com.google.gson.annotations.SerializedName;
 
 public class Tweet {
@@ -14,6 +15,12 @@ public class Tweet {
     @SerializedName("Text")
     private String text;
 
+    // The still-escaped UTF-8 bytes of the text, as located by the deserializer. The text is decoded only
+    // when somebody asks for it, so records that are dropped early never pay for it
+    private transient byte[] rawText;
+    private transient int rawTextOffset;
+    private transient int rawTextLength;
+
     public Long getCreatedAt() {
         return this.createdAt;
     }
@@ -51,11 +58,26 @@ public class Tweet {
     }
 
     public String getText() {
+        if (this.rawText != null) {
+            this.text = JsonStrings.decode(rawText, rawTextOffset, rawTextLength);
+            this.rawText = null;
+        }
         return this.text;
     }
 
     public void setText(String text) {
         this.text = text;
+        this.rawText = null;
+    }
+
+    /**
+     * Sets the text lazily, from the contents of a JSON string (without the quotes).
+     */
+    public void setText(byte[] json, int offset, int length) {
+        this.text = null;
+        this.rawText = json;
+        this.rawTextOffset = offset;
+        this.rawTextLength = length;
     }
 
     @Override
@@ -65,7 +87,10 @@ public class Tweet {
                 ", id=" + id +
                 ", lang='" + lang + '\'' +
                 ", retweet=" + retweet +
-                ", text='" + text + '\'' +
+                // printing a tweet must not decode its text, the topology prints the retweets it drops as well
+                (rawText != null
+                        ? ", text=<" + rawTextLength + " bytes, not decoded>"
+                        : ", text='" + text + '\'') +
                 '}';
     }
 }
\ No newline at end of file
@@ -3,6 +3,7 @@ package com.gelerion.kafka.streams.crypto.sentiment.serialization.avro;
 import com.gelerion.kafka.streams.crypto.sentiment.model.EntitySentiment;
 import io.confluent.kafka.streams.serdes.avro.SpecificAvroSerde;
 import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serdes;
 
 import java.util.Collections;
 import java.util.Map;
@@ -25,4 +26,16 @@ public class AvroSerdes {
         serde.configure(serdeConfig, isKey);
         return serde;
     }
+
+    /*
+    A registry-free alternative for topics that only this application reads (e.g. repartition topics).
+    Each record starts with the 8 byte fingerprint of its schema (instead of a schema id looked up in the registry),
+    so a record written with another schema is rejected instead of being decoded into garbage, and the encoders,
+    decoders and datum writers are reused per thread (the records are not, see FingerprintAvroDeserializer).
+     */
+    public static Serde<EntitySentiment> entitySentimentFingerprinted() {
+        return Serdes.serdeFrom(
+                new FingerprintAvroSerializer<>(EntitySentiment.getClassSchema()),
+                new FingerprintAvroDeserializer<>(EntitySentiment.getClassSchema()));
+    }
 }
@@ -0,0 +1,55 @@
+package com.gelerion.kafka.streams.crypto.sentiment.serialization.avro;
+
+import org.apache.avro.Schema;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.apache.avro.specific.SpecificRecord;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import java.io.IOException;
+
+/**
+ * Reads records written by {@link FingerprintAvroSerializer}. Only the schema the deserializer was created with is
+ * accepted, a record written with any other schema is rejected based on its fingerprint.
+ *
+ * Every call returns a new record. The decoder could fill the previous one instead, but Kafka Streams deserializes
+ * the next record of a partition before the current one has been processed (to know its timestamp), so a reused
+ * record would be overwritten while it is still being aggregated.
+ */
+public class FingerprintAvroDeserializer<T extends SpecificRecord> implements Deserializer<T> {
+    private final Schema schema;
+    private final byte[] header;
+    private final ThreadLocal<Reader> readers;
+
+    public FingerprintAvroDeserializer(Schema schema) {
+        this.schema = schema;
+        this.header = FingerprintHeader.of(schema);
+        this.readers = ThreadLocal.withInitial(Reader::new);
+    }
+
+    @Override
+    public T deserialize(String topic, byte[] bytes) {
+        if (bytes == null) {
+            return null;
+        }
+        if (!FingerprintHeader.matches(header, bytes)) {
+            throw new SerializationException("Unknown schema fingerprint for topic " + topic
+                    + ", expected " + schema.getFullName() + " written by FingerprintAvroSerializer");
+        }
+        Reader reader = readers.get();
+        try {
+            reader.decoder = DecoderFactory.get()
+                    .binaryDecoder(bytes, header.length, bytes.length - header.length, reader.decoder);
+            return reader.datumReader.read(null, reader.decoder);
+        } catch (IOException | RuntimeException e) {
+            throw new SerializationException("Error deserializing Avro record for topic " + topic, e);
+        }
+    }
+
+    private final class Reader {
+        private final SpecificDatumReader<T> datumReader = new SpecificDatumReader<>(schema);
+        private BinaryDecoder decoder;
+    }
+}
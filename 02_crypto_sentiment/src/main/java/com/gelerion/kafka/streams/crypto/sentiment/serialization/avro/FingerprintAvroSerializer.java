@@ -0,0 +1,52 @@
+package com.gelerion.kafka.streams.crypto.sentiment.serialization.avro;
+
+import org.apache.avro.Schema;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.specific.SpecificDatumWriter;
+import org.apache.avro.specific.SpecificRecord;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * Writes Avro records in the Avro single object encoding: a 2 byte marker, the 8 byte CRC-64-AVRO fingerprint of the
+ * writer schema and the binary encoded record. Every stream thread gets its own output buffer, encoder and datum
+ * writer, which are reused for all the records it serializes.
+ */
+public class FingerprintAvroSerializer<T extends SpecificRecord> implements Serializer<T> {
+    private final Schema schema;
+    private final byte[] header;
+    private final ThreadLocal<Writer> writers;
+
+    public FingerprintAvroSerializer(Schema schema) {
+        this.schema = schema;
+        this.header = FingerprintHeader.of(schema);
+        this.writers = ThreadLocal.withInitial(Writer::new);
+    }
+
+    @Override
+    public byte[] serialize(String topic, T record) {
+        if (record == null) {
+            return null;
+        }
+        Writer writer = writers.get();
+        try {
+            writer.buffer.reset();
+            writer.buffer.write(header);
+            writer.encoder = EncoderFactory.get().directBinaryEncoder(writer.buffer, writer.encoder);
+            writer.datumWriter.write(record, writer.encoder);
+            return writer.buffer.toByteArray();
+        } catch (IOException | RuntimeException e) {
+            throw new SerializationException("Error serializing Avro record for topic " + topic, e);
+        }
+    }
+
+    private final class Writer {
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+        private final SpecificDatumWriter<T> datumWriter = new SpecificDatumWriter<>(schema);
+        private BinaryEncoder encoder;
+    }
+}
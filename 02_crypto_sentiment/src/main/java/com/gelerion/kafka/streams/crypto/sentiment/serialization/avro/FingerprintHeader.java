@@ -0,0 +1,41 @@
+package com.gelerion.kafka.streams.crypto.sentiment.serialization.avro;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaNormalization;
+
+/**
+ * The header of the Avro single object encoding, see
+ * https://avro.apache.org/docs/1.11.0/spec.html#single_object_encoding
+ */
+final class FingerprintHeader {
+    private static final byte MARKER_0 = (byte) 0xC3;
+    private static final byte MARKER_1 = (byte) 0x01;
+    static final int LENGTH = 10;
+
+    private FingerprintHeader() {
+    }
+
+    static byte[] of(Schema schema) {
+        long fingerprint = SchemaNormalization.parsingFingerprint64(schema);
+        byte[] header = new byte[LENGTH];
+        header[0] = MARKER_0;
+        header[1] = MARKER_1;
+        // the fingerprint is stored little-endian
+        for (int i = 0; i < 8; i++) {
+            header[2 + i] = (byte) (fingerprint >>> (8 * i));
+        }
+        return header;
+    }
+
+    static boolean matches(byte[] header, byte[] bytes) {
+        if (bytes.length < LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < LENGTH; i++) {
+            if (header[i] != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,59 @@
+package com.gelerion.kafka.streams.crypto.sentiment.serialization.binary;
+
+import com.gelerion.kafka.streams.crypto.sentiment.EntitySentimentStats;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A fixed size binary serde of {@link EntitySentimentStats}: a format version, the count and the five sums and
+ * extremes, 49 bytes in all. The window stores update an aggregate for every mention of its entity (and a sliding
+ * window store every aggregate of the last window size), so the aggregate is read and written far more often than
+ * it is queried.
+ */
+public class EntitySentimentStatsSerde extends Serdes.WrapperSerde<EntitySentimentStats> {
+    // bump whenever the encoding changes, and keep reading the previous version until its entries are gone
+    private static final byte VERSION = 1;
+    private static final int SIZE = 1 + Long.BYTES + 5 * Double.BYTES;
+
+    public EntitySentimentStatsSerde() {
+        super(new StatsSerializer(), new StatsDeserializer());
+    }
+
+    private static final class StatsSerializer implements Serializer<EntitySentimentStats> {
+        @Override
+        public byte[] serialize(String topic, EntitySentimentStats stats) {
+            if (stats == null) {
+                return null;
+            }
+            return ByteBuffer.allocate(SIZE)
+                    .put(VERSION)
+                    .putLong(stats.getCount())
+                    .putDouble(stats.getScoreSum())
+                    .putDouble(stats.getMinScore())
+                    .putDouble(stats.getMaxScore())
+                    .putDouble(stats.getSalienceSum())
+                    .putDouble(stats.getSalienceWeightedScoreSum())
+                    .array();
+        }
+    }
+
+    private static final class StatsDeserializer implements Deserializer<EntitySentimentStats> {
+        @Override
+        public EntitySentimentStats deserialize(String topic, byte[] data) {
+            if (data == null) {
+                return null;
+            }
+            if (data.length != SIZE || data[0] != VERSION) {
+                throw new SerializationException("Unsupported sentiment stats of " + data.length + " bytes"
+                        + " in topic " + topic + ", expected " + SIZE + " bytes of version " + VERSION);
+            }
+            ByteBuffer bytes = ByteBuffer.wrap(data, 1, SIZE - 1);
+            return new EntitySentimentStats(bytes.getLong(), bytes.getDouble(), bytes.getDouble(), bytes.getDouble(),
+                    bytes.getDouble(), bytes.getDouble());
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.gelerion.kafka.streams.crypto.sentiment.serialization.json;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Decodes the contents of a JSON string (without the surrounding quotes) directly from its UTF-8 bytes.
+ */
+public final class JsonStrings {
+
+    private JsonStrings() {
+    }
+
+    public static String decode(byte[] bytes, int offset, int length) {
+        int end = offset + length;
+        int escape = offset;
+        while (escape < end && bytes[escape] != '\\') {
+            escape++;
+        }
+        // the common case: nothing to unescape
+        if (escape == end) {
+            return new String(bytes, offset, length, UTF_8);
+        }
+
+        StringBuilder out = new StringBuilder(length);
+        int runStart = offset;
+        int i = escape;
+        while (i < end) {
+            if (bytes[i] != '\\') {
+                i++;
+                continue;
+            }
+            // escape sequences are plain ASCII, so a run never ends in the middle of a multi-byte character
+            if (i > runStart) {
+                out.append(new String(bytes, runStart, i - runStart, UTF_8));
+            }
+            byte escaped = bytes[i + 1];
+            switch (escaped) {
+                case '"':
+                case '\\':
+                case '/':
+                    out.append((char) escaped);
+                    break;
+                case 'b':
+                    out.append('\b');
+                    break;
+                case 'f':
+                    out.append('\f');
+                    break;
+                case 'n':
+                    out.append('\n');
+                    break;
+                case 'r':
+                    out.append('\r');
+                    break;
+                case 't':
+                    out.append('\t');
+                    break;
+                case 'u':
+                    out.append(hexChar(bytes, i + 2));
+                    i += 4;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Invalid escape sequence \\" + (char) escaped);
+            }
+            i += 2;
+            runStart = i;
+        }
+        if (runStart < end) {
+            out.append(new String(bytes, runStart, end - runStart, UTF_8));
+        }
+        return out.toString();
+    }
+
+    private static char hexChar(byte[] bytes, int offset) {
+        int value = 0;
+        for (int i = offset; i < offset + 4; i++) {
+            int digit = Character.digit(bytes[i], 16);
+            if (digit < 0) {
+                throw new IllegalArgumentException("Invalid unicode escape sequence");
+            }
+            value = (value << 4) | digit;
+        }
+        return (char) value;
+    }
+}
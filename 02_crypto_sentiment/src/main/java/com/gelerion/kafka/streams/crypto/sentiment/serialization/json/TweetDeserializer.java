@@ -1,23 +1,279 @@
 package com.gelerion.kafka.streams.crypto.sentiment.serialization.json;
 
 import com.gelerion.kafka.streams.crypto.sentiment.serialization.Tweet;
-import com.google.gson.FieldNamingPolicy;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import org.apache.kafka.common.errors.SerializationException;
 import org.apache.kafka.common.serialization.Deserializer;
 
-import java.nio.charset.StandardCharsets;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
+/**
+ * Reads a {@link Tweet} straight from the UTF-8 bytes: no intermediate String, no reflection.
+ *
+ * This is projection done at the byte level. Only the fields we keep in {@link Tweet} are read, everything else
+ * (e.g. the nested User object) is skipped, and we stop scanning as soon as all of them have been found.
+ * Retweet, Lang, Id and CreatedAt are decoded eagerly since filtering and branching need them, whereas Text is
+ * only located: it is decoded on the first call to {@link Tweet#getText()}, so the retweets that are filtered out
+ * right away never allocate their text.
+ */
 public class TweetDeserializer implements Deserializer<Tweet> {
-    private final Gson gson =
-            new GsonBuilder()
-                    .setFieldNamingPolicy(FieldNamingPolicy.UPPER_CAMEL_CASE)
-                    .create();
+    private static final byte[] CREATED_AT = "CreatedAt".getBytes(UTF_8);
+    private static final byte[] ID = "Id".getBytes(UTF_8);
+    private static final byte[] LANG = "Lang".getBytes(UTF_8);
+    private static final byte[] RETWEET = "Retweet".getBytes(UTF_8);
+    private static final byte[] TEXT = "Text".getBytes(UTF_8);
+
+    private static final int CREATED_AT_FIELD = 1;
+    private static final int ID_FIELD = 1 << 1;
+    private static final int LANG_FIELD = 1 << 2;
+    private static final int RETWEET_FIELD = 1 << 3;
+    private static final int TEXT_FIELD = 1 << 4;
+    private static final int ALL_FIELDS = CREATED_AT_FIELD | ID_FIELD | LANG_FIELD | RETWEET_FIELD | TEXT_FIELD;
+
+    // language codes are almost always two lowercase letters, so we decode each of them only once
+    private static final String[] LANG_CODES = new String[26 * 26];
 
     @Override
     public Tweet deserialize(String topic, byte[] bytes) {
         if (bytes == null) return null;
-        return gson.fromJson(
-                new String(bytes, StandardCharsets.UTF_8), Tweet.class);
+        try {
+            return new Parser(bytes).parse();
+        } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new SerializationException("Malformed tweet JSON", e);
+        }
+    }
+
+    // the deserializer may be shared by stream threads, so the parsing state lives in a short-lived object
+    private static final class Parser {
+        private final byte[] json;
+        private int pos;
+
+        Parser(byte[] json) {
+            this.json = json;
+        }
+
+        Tweet parse() {
+            skipWhitespace();
+            if (json[pos] == 'n') {
+                literal("null");
+                return null;
+            }
+            expect('{');
+            Tweet tweet = new Tweet();
+            skipWhitespace();
+            if (json[pos] == '}') {
+                return tweet;
+            }
+
+            int seen = 0;
+            while (seen != ALL_FIELDS) {
+                skipWhitespace();
+                expect('"');
+                int nameStart = pos;
+                int nameLength = skipString() - nameStart - 1;
+                skipWhitespace();
+                expect(':');
+                skipWhitespace();
+
+                if (matches(RETWEET, nameStart, nameLength)) {
+                    tweet.setRetweet(readBoolean());
+                    seen |= RETWEET_FIELD;
+                } else if (matches(LANG, nameStart, nameLength)) {
+                    tweet.setLang(readLang());
+                    seen |= LANG_FIELD;
+                } else if (matches(TEXT, nameStart, nameLength)) {
+                    readText(tweet);
+                    seen |= TEXT_FIELD;
+                } else if (matches(ID, nameStart, nameLength)) {
+                    tweet.setId(readLong());
+                    seen |= ID_FIELD;
+                } else if (matches(CREATED_AT, nameStart, nameLength)) {
+                    tweet.setCreatedAt(readLong());
+                    seen |= CREATED_AT_FIELD;
+                } else {
+                    skipValue();
+                }
+
+                skipWhitespace();
+                byte next = json[pos++];
+                if (next == '}') {
+                    break;
+                }
+                if (next != ',') {
+                    throw error("expected ',' or '}'");
+                }
+            }
+            return tweet;
+        }
+
+        private void readText(Tweet tweet) {
+            if (json[pos] == 'n') {
+                literal("null");
+                return;
+            }
+            expect('"');
+            int start = pos;
+            int end = skipString() - 1;
+            tweet.setText(json, start, end - start);
+        }
+
+        private String readLang() {
+            if (json[pos] == 'n') {
+                literal("null");
+                return null;
+            }
+            expect('"');
+            int start = pos;
+            int end = skipString() - 1;
+            if (end - start == 2 && isLowercase(json[start]) && isLowercase(json[start + 1])) {
+                int index = (json[start] - 'a') * 26 + (json[start + 1] - 'a');
+                String code = LANG_CODES[index];
+                if (code == null) {
+                    // racy, but harmless: at worst the same code is decoded more than once
+                    code = new String(json, start, 2, UTF_8);
+                    LANG_CODES[index] = code;
+                }
+                return code;
+            }
+            return JsonStrings.decode(json, start, end - start);
+        }
+
+        private Boolean readBoolean() {
+            switch (json[pos]) {
+                case 't':
+                    literal("true");
+                    return Boolean.TRUE;
+                case 'f':
+                    literal("false");
+                    return Boolean.FALSE;
+                case 'n':
+                    literal("null");
+                    return null;
+                default:
+                    throw error("expected a boolean");
+            }
+        }
+
+        private Long readLong() {
+            if (json[pos] == 'n') {
+                literal("null");
+                return null;
+            }
+            boolean negative = json[pos] == '-';
+            if (negative) pos++;
+            int start = pos;
+            // accumulated negatively, like Long.parseLong, so that Long.MIN_VALUE fits as well
+            long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+            long value = 0;
+            while (pos < json.length && json[pos] >= '0' && json[pos] <= '9') {
+                int digit = json[pos] - '0';
+                if (value < limit / 10 || value * 10 < limit + digit) {
+                    throw error("integer out of range");
+                }
+                value = value * 10 - digit;
+                pos++;
+            }
+            if (pos == start
+                    || pos < json.length && (json[pos] == '.' || json[pos] == 'e' || json[pos] == 'E')) {
+                throw error("expected an integer");
+            }
+            return negative ? value : -value;
+        }
+
+        private void skipValue() {
+            switch (json[pos]) {
+                case '"':
+                    pos++;
+                    skipString();
+                    return;
+                case '{':
+                case '[':
+                    skipNested();
+                    return;
+                default:
+                    // number, true, false or null
+                    while (!isDelimiter(json[pos])) {
+                        pos++;
+                    }
+            }
+        }
+
+        private void skipNested() {
+            int depth = 0;
+            do {
+                byte c = json[pos++];
+                if (c == '"') {
+                    skipString();
+                } else if (c == '{' || c == '[') {
+                    depth++;
+                } else if (c == '}' || c == ']') {
+                    depth--;
+                }
+            } while (depth > 0);
+        }
+
+        /**
+         * Expects pos to point right after an opening quote.
+         * @return the position right after the closing quote
+         */
+        private int skipString() {
+            while (true) {
+                byte c = json[pos++];
+                if (c == '"') {
+                    return pos;
+                }
+                // multi-byte UTF-8 sequences never contain the quote or backslash bytes
+                if (c == '\\') {
+                    // validate here, so that a broken text fails deserialization rather than the first getText()
+                    if (!isEscape(json[pos++])) {
+                        throw error("invalid escape sequence");
+                    }
+                }
+            }
+        }
+
+        private boolean matches(byte[] name, int start, int length) {
+            if (length != name.length) return false;
+            for (int i = 0; i < length; i++) {
+                if (json[start + i] != name[i]) return false;
+            }
+            return true;
+        }
+
+        private void literal(String literal) {
+            for (int i = 0; i < literal.length(); i++) {
+                if (json[pos++] != literal.charAt(i)) {
+                    throw error("expected " + literal);
+                }
+            }
+        }
+
+        private void expect(char c) {
+            if (json[pos++] != c) {
+                throw error("expected '" + c + "'");
+            }
+        }
+
+        private void skipWhitespace() {
+            while (json[pos] == ' ' || json[pos] == '\n' || json[pos] == '\r' || json[pos] == '\t') {
+                pos++;
+            }
+        }
+
+        private static boolean isDelimiter(byte c) {
+            return c == ',' || c == '}' || c == ']' || c == ' ' || c == '\n' || c == '\r' || c == '\t';
+        }
+
+        private static boolean isEscape(byte c) {
+            return c == '"' || c == '\\' || c == '/' || c == 'b' || c == 'f' || c == 'n' || c == 'r' || c == 't'
+                    || c == 'u';
+        }
+
+        private static boolean isLowercase(byte c) {
+            return c >= 'a' && c <= 'z';
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at position " + (pos - 1));
+        }
     }
-}
\ No newline at end of file
+}
@@ -11,6 +11,8 @@ class TweetSerializer implements Serializer<Tweet> {
     @Override
     public byte[] serialize(String topic, Tweet tweet) {
         if (tweet == null) return null;
+        // Gson reads the fields directly, so make sure a lazily decoded text is materialized first
+        tweet.getText();
         return gson.toJson(tweet).getBytes(StandardCharsets.UTF_8);
     }
 }
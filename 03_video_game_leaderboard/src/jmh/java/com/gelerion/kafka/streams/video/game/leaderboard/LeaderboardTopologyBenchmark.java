@@ -0,0 +1,66 @@
+package com.gelerion.kafka.streams.video.game.leaderboard;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the leaderboard topologies (see {@link TopologyVariant}) on synthetic score events, see
+ * {@link SyntheticScores}, end to end in a {@link org.apache.kafka.streams.TopologyTestDriver}.
+ *
+ * Scores are score events/s. The bytes written to the repartition topics per score event are printed at the end of
+ * each trial, the allocation rate comes from the gc profiler (see build.gradle). The mix can be changed with the
+ * parameters, e.g.
+ * ./gradlew jmhJar && java -jar build/libs/03_video_game_leaderboard-jmh.jar LeaderboardTopologyBenchmark -p products=1000
+ *
+ * {@link TopologyEquivalence} checks that the variants compute the same leaderboards.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(LeaderboardTopologyBenchmark.RECORDS)
+public class LeaderboardTopologyBenchmark {
+    static final int RECORDS = 1_000;
+
+    @Param({"REPARTITIONED", "GLOBAL_PLAYERS"})
+    public TopologyVariant variant;
+    @Param("10000")
+    public int players;
+    @Param("100")
+    public int products;
+
+    private SyntheticScores scores;
+    private TopologyRun run;
+    private String[][] batches;
+    private int batch;
+    private long scoreEvents;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        scores = new SyntheticScores(players, products, RECORDS * 10);
+        batches = new String[10][];
+        for (int i = 0; i < batches.length; i++) {
+            batches[i] = Arrays.copyOfRange(scores.scoreEvents, i * RECORDS, (i + 1) * RECORDS);
+        }
+        run = new TopologyRun(variant, scores);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        long repartitionBytes = run.repartitionBytes();
+        run.close();
+        System.out.printf("%n%s: %s, %.1f repartition bytes per score event%n",
+                variant, run.repartitionTopics(), (double) repartitionBytes / scoreEvents);
+    }
+
+    @Benchmark
+    public void topology(Blackhole blackhole) {
+        run.pipeScoreEvents(batches[batch]);
+        batch = (batch + 1) % batches.length;
+        scoreEvents += RECORDS;
+        blackhole.consume(run.drain());
+    }
+}
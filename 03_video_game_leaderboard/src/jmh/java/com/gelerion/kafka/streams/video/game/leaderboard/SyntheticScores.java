@@ -0,0 +1,42 @@
+package com.gelerion.kafka.streams.video.game.leaderboard;
+
+import java.util.Random;
+
+/**
+ * Synthetic players, products and score events in the format of the files in data/, generated from a fixed seed so
+ * that every run (and every topology variant) sees the same input.
+ */
+class SyntheticScores {
+    final String[] playerKeys;
+    final String[] players;
+    final String[] productKeys;
+    final String[] products;
+    final String[] scoreEvents;
+
+    SyntheticScores(int playerCount, int productCount, int scoreEventCount) {
+        Random random = new Random(42);
+
+        playerKeys = new String[playerCount];
+        players = new String[playerCount];
+        for (int i = 0; i < playerCount; i++) {
+            playerKeys[i] = String.valueOf(i + 1);
+            players[i] = "{\"id\": " + (i + 1) + ", \"name\": \"Player " + (i + 1) + "\"}";
+        }
+
+        productKeys = new String[productCount];
+        products = new String[productCount];
+        for (int i = 0; i < productCount; i++) {
+            productKeys[i] = String.valueOf(i + 1);
+            products[i] = "{\"id\": " + (i + 1) + ", \"name\": \"Game " + (i + 1) + "\"}";
+        }
+
+        scoreEvents = new String[scoreEventCount];
+        for (int i = 0; i < scoreEventCount; i++) {
+            // a few popular games get most of the events
+            int product = Math.min(productCount, 1 + (int) Math.abs(random.nextGaussian() * productCount / 10));
+            scoreEvents[i] = "{\"score\": " + random.nextInt(100_000)
+                    + ", \"product_id\": " + product
+                    + ", \"player_id\": " + (1 + random.nextInt(playerCount)) + "}";
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.gelerion.kafka.streams.video.game.leaderboard;
+
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.test.TestRecord;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Runs every {@link TopologyVariant} over the same synthetic score events and checks that they produce the same
+ * high-scores updates and end up with the same leaderboards store. It also reports the bytes written to the
+ * repartition topics per score event. Exits with 1 if the variants disagree:
+ * ./gradlew jmhJar && java -cp build/libs/03_video_game_leaderboard-jmh.jar \
+ *     com.gelerion.kafka.streams.video.game.leaderboard.TopologyEquivalence
+ */
+public class TopologyEquivalence {
+    private static final int PLAYERS = 1_000;
+    private static final int PRODUCTS = 50;
+    private static final int SCORE_EVENTS = 5_000;
+
+    public static void main(String[] args) throws Exception {
+        SyntheticScores scores = new SyntheticScores(PLAYERS, PRODUCTS, SCORE_EVENTS);
+
+        Map<String, List<String>> expectedUpdates = null;
+        Map<String, String> expectedLeaderboards = null;
+        boolean equivalent = true;
+        for (TopologyVariant variant : TopologyVariant.values()) {
+            Map<String, List<String>> updates = new TreeMap<>();
+            Map<String, String> leaderboards = new TreeMap<>();
+            long repartitionBytes;
+            List<String> repartitionTopics;
+            try (TopologyRun run = new TopologyRun(variant, scores)) {
+                run.pipeScoreEvents(scores.scoreEvents);
+                Map<String, List<TestRecord<byte[], byte[]>>> produced = run.drain();
+                for (TestRecord<byte[], byte[]> record : produced.get("high-scores")) {
+                    updates.computeIfAbsent(utf8(record.key()), key -> new ArrayList<>()).add(utf8(record.value()));
+                }
+
+                KeyValueStore<String, HighScores> store = run.driver().getKeyValueStore("leaderboards");
+                try (KeyValueIterator<String, HighScores> all = store.all()) {
+                    while (all.hasNext()) {
+                        KeyValue<String, HighScores> entry = all.next();
+                        leaderboards.put(entry.key, entry.value.toList().toString());
+                    }
+                }
+                repartitionBytes = run.repartitionBytes();
+                repartitionTopics = run.repartitionTopics();
+            }
+
+            System.out.printf("%s: %d leaderboards, %d updates, %s, %.1f repartition bytes per score event%n",
+                    variant, leaderboards.size(), updates.values().stream().mapToInt(List::size).sum(),
+                    repartitionTopics, (double) repartitionBytes / SCORE_EVENTS);
+
+            if (expectedUpdates == null) {
+                expectedUpdates = updates;
+                expectedLeaderboards = leaderboards;
+                continue;
+            }
+            if (!expectedUpdates.equals(updates)) {
+                System.out.println(variant + " produced different high-scores updates than "
+                        + TopologyVariant.values()[0]);
+                equivalent = false;
+            }
+            if (!expectedLeaderboards.equals(leaderboards)) {
+                System.out.println(variant + " ended up with different leaderboards than "
+                        + TopologyVariant.values()[0]);
+                equivalent = false;
+            }
+        }
+        if (!equivalent) {
+            System.exit(1);
+        }
+        System.out.println("all variants are equivalent");
+    }
+
+    private static String utf8(byte[] bytes) {
+        return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,140 @@
+package com.gelerion.kafka.streams.video.game.leaderboard;
+
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.TestInputTopic;
+import org.apache.kafka.streams.TestOutputTopic;
+import org.apache.kafka.streams.TopologyTestDriver;
+import org.apache.kafka.streams.test.TestRecord;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+/**
+ * A {@link TopologyTestDriver} running one topology variant, which keeps track of the bytes (keys, values and
+ * headers) written to each topic, e.g. to the repartition topics.
+ */
+class TopologyRun implements Closeable {
+    private final PrintStream stdout = System.out;
+    private final Path stateDir;
+    private final TopologyTestDriver driver;
+    private final TestInputTopic<String, String> players;
+    private final TestInputTopic<String, String> products;
+    private final TestInputTopic<String, String> scoreEvents;
+    private final Map<String, TestOutputTopic<byte[], byte[]>> outputs = new HashMap<>();
+    private final Map<String, Long> bytesByTopic = new HashMap<>();
+
+    TopologyRun(TopologyVariant variant, SyntheticScores scores) throws IOException {
+        // the topology prints every record, which we don't want to see
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        }));
+        stateDir = Files.createTempDirectory("leaderboard-topology");
+        Properties props = new Properties();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, "benchmark");
+        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "dummy:1234");
+        props.put(StreamsConfig.STATE_DIR_CONFIG, stateDir.toString());
+        driver = new TopologyTestDriver(variant.build(props), props);
+
+        StringSerializer serializer = new StringSerializer();
+        players = driver.createInputTopic("players", serializer, serializer);
+        products = driver.createInputTopic("products", serializer, serializer);
+        scoreEvents = driver.createInputTopic("score-events", serializer, serializer);
+
+        for (int i = 0; i < scores.players.length; i++) {
+            players.pipeInput(scores.playerKeys[i], scores.players[i]);
+        }
+        for (int i = 0; i < scores.products.length; i++) {
+            products.pipeInput(scores.productKeys[i], scores.products[i]);
+        }
+        drain();
+        bytesByTopic.clear();
+    }
+
+    void pipeScoreEvents(String[] events) {
+        for (String event : events) {
+            scoreEvents.pipeInput(null, event);
+        }
+    }
+
+    /**
+     * Reads everything produced since the last call, the driver keeps it until it is read.
+     *
+     * @return the records by topic
+     */
+    Map<String, List<TestRecord<byte[], byte[]>>> drain() {
+        Map<String, List<TestRecord<byte[], byte[]>>> produced = new HashMap<>();
+        for (String topic : driver.producedTopicNames()) {
+            TestOutputTopic<byte[], byte[]> output = outputs.computeIfAbsent(topic, name ->
+                    driver.createOutputTopic(name, new ByteArrayDeserializer(), new ByteArrayDeserializer()));
+            List<TestRecord<byte[], byte[]>> records = output.readRecordsToList();
+            long bytes = 0;
+            for (TestRecord<byte[], byte[]> record : records) {
+                bytes += length(record.key()) + length(record.value());
+                for (Header header : record.headers()) {
+                    bytes += header.key().length() + length(header.value());
+                }
+            }
+            bytesByTopic.merge(topic, bytes, Long::sum);
+            produced.put(topic, records);
+        }
+        return produced;
+    }
+
+    /** The bytes written to the repartition topics since the players and products were loaded */
+    long repartitionBytes() {
+        long bytes = 0;
+        for (Map.Entry<String, Long> topic : bytesByTopic.entrySet()) {
+            if (topic.getKey().endsWith("-repartition")) {
+                bytes += topic.getValue();
+            }
+        }
+        return bytes;
+    }
+
+    List<String> repartitionTopics() {
+        List<String> topics = new ArrayList<>();
+        for (String topic : driver.producedTopicNames()) {
+            if (topic.endsWith("-repartition")) {
+                topics.add(topic);
+            }
+        }
+        return topics;
+    }
+
+    TopologyTestDriver driver() {
+        return driver;
+    }
+
+    private static long length(byte[] bytes) {
+        return bytes == null ? 0 : bytes.length;
+    }
+
+    @Override
+    public void close() throws IOException {
+        driver.close();
+        System.setOut(stdout);
+        try (Stream<Path> files = Files.walk(stateDir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.gelerion.kafka.streams.video.game.leaderboard;
+
+import org.apache.kafka.streams.Topology;
+
+import java.util.Properties;
+
+/** The leaderboard topologies being compared */
+public enum TopologyVariant {
+    // score events rekeyed by player id for the players KTable join, then by product id for the aggregation
+    REPARTITIONED {
+        @Override
+        Topology build(Properties config) {
+            return LeaderboardServiceTopology.build(HighScores.DEFAULT_K);
+        }
+    },
+    // players joined through a GlobalKTable, score events only rekeyed by product id
+    GLOBAL_PLAYERS {
+        @Override
+        Topology build(Properties config) {
+            return LeaderboardServiceTopology.buildWithGlobalPlayers(HighScores.DEFAULT_K, productId -> { }, config);
+        }
+    };
+
+    abstract Topology build(Properties config);
+}
@@ -3,31 +3,182 @@ package com.gelerion.kafka.streams.video.game.leaderboard;
 import com.gelerion.kafka.streams.video.game.leaderboard.models.join.Enriched;
 
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Arrays;
 import java.util.List;
-import java.util.TreeSet;
 
+/**
+ * The top K scores of a single game, highest first.
+ *
+ * Entries are kept in parallel arrays (score, player id, player name) sorted in place, so adding a score neither
+ * allocates nor rebalances a tree: a binary search finds the position and the lower entries are shifted down by one.
+ * Equal scores are ordered by player id (lowest first), so players with the same score are all kept, and in the
+ * same order on every instance. A (score, player) pair is only kept once.
+ *
+ * The arrays grow on demand up to K, so a top-100 board of a game with a handful of players stays small.
+ */
 public class HighScores {
-    private final TreeSet<Enriched> highScores = new TreeSet<>();
+    public static final int DEFAULT_K = 3;
+    private static final int INITIAL_CAPACITY = 4;
 
-    public HighScores add(final Enriched enriched) {
-        highScores.add(enriched);
+    private int k;
+    private int size;
+    private double[] scores;
+    private long[] playerIds;
+    private String[] playerNames;
+    // all scores of a board belong to the same game
+    private Long productId;
+    private String gameName;
+
+    /** A board of the default size */
+    public HighScores() {
+        this(DEFAULT_K);
+    }
 
-        // keep only the top 3 high scores
-        if (highScores.size() > 3) {
-            highScores.remove(highScores.last());
+    public HighScores(int k) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("k must be positive, got " + k);
         }
+        this.k = k;
+        int capacity = Math.min(k, INITIAL_CAPACITY);
+        this.scores = new double[capacity];
+        this.playerIds = new long[capacity];
+        this.playerNames = new String[capacity];
+    }
+
+    public HighScores(int k, Long productId, String gameName) {
+        this(k);
+        this.productId = productId;
+        this.gameName = gameName;
+    }
 
+    public HighScores add(final Enriched enriched) {
+        if (productId == null) {
+            productId = enriched.getProductId();
+        }
+        // product names may change, we report the latest one
+        gameName = enriched.getGameName();
+        offer(enriched.getScore(), enriched.getPlayerId(), enriched.getPlayerName());
         return this;
     }
 
-    public List<Enriched> toList() {
-        Iterator<Enriched> scores = highScores.iterator();
-        List<Enriched> playerScores = new ArrayList<>();
-        while (scores.hasNext()) {
-            playerScores.add(scores.next());
+    /**
+     * @return the (1-based) rank of the score after it was added, or -1 if it didn't make it into the top K
+     */
+    public int offer(double score, long playerId, String playerName) {
+        int position = position(score, playerId);
+        if (position < size && scores[position] == score && playerIds[position] == playerId) {
+            playerNames[position] = playerName;
+            return position + 1;
+        }
+        // a full board only changes if the score ranks before the current last entry
+        if (position == k) {
+            return -1;
+        }
+
+        if (size == scores.length && size < k) {
+            grow();
+        }
+        // shift the lower entries down, dropping the last one of a full board
+        int moved = Math.min(size, k - 1) - position;
+        System.arraycopy(scores, position, scores, position + 1, moved);
+        System.arraycopy(playerIds, position, playerIds, position + 1, moved);
+        System.arraycopy(playerNames, position, playerNames, position + 1, moved);
+        scores[position] = score;
+        playerIds[position] = playerId;
+        playerNames[position] = playerName;
+        size = Math.min(size + 1, k);
+        return position + 1;
+    }
+
+    /**
+     * @return the best (1-based) rank of the player, or -1 if the player has no score in the top K
+     */
+    public int rank(long playerId) {
+        for (int i = 0; i < size; i++) {
+            if (playerIds[i] == playerId) {
+                return i + 1;
+            }
         }
+        return -1;
+    }
+
+    /**
+     * @return the (1-based) rank the score would have, or -1 if it wouldn't make it into the top K
+     */
+    public int rank(double score, long playerId) {
+        int position = position(score, playerId);
+        return position < k ? position + 1 : -1;
+    }
+
+    /** The maximum number of scores kept */
+    public int k() {
+        return k;
+    }
+
+    public int size() {
+        return size;
+    }
 
+    public double scoreAt(int rank) {
+        return scores[index(rank)];
+    }
+
+    public long playerIdAt(int rank) {
+        return playerIds[index(rank)];
+    }
+
+    public String playerNameAt(int rank) {
+        return playerNames[index(rank)];
+    }
+
+    public Long getProductId() {
+        return productId;
+    }
+
+    public String getGameName() {
+        return gameName;
+    }
+
+    public List<Enriched> toList() {
+        List<Enriched> playerScores = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            playerScores.add(new Enriched(playerIds[i], productId, playerNames[i], gameName, scores[i]));
+        }
         return playerScores;
     }
+
+    // the first index whose entry doesn't rank before (score, playerId)
+    private int position(double score, long playerId) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (ranksBefore(scores[mid], playerIds[mid], score, playerId)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private void grow() {
+        int capacity = Math.min(k, scores.length * 2);
+        scores = Arrays.copyOf(scores, capacity);
+        playerIds = Arrays.copyOf(playerIds, capacity);
+        playerNames = Arrays.copyOf(playerNames, capacity);
+    }
+
+    private int index(int rank) {
+        if (rank < 1 || rank > size) {
+            throw new IndexOutOfBoundsException("rank " + rank + " out of [1, " + size + "]");
+        }
+        return rank - 1;
+    }
+
+    // higher scores first, equal scores by player id
+    static boolean ranksBefore(double score, long playerId, double otherScore, long otherPlayerId) {
+        int byScore = Double.compare(otherScore, score);
+        return byScore < 0 || (byScore == 0 && playerId < otherPlayerId);
+    }
 }
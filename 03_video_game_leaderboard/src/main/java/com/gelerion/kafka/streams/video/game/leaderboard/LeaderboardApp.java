@@ -9,7 +9,8 @@ import java.util.Properties;
 
 public class LeaderboardApp {
     public static void main(String[] args) {
-        Topology topology = LeaderboardServiceTopology.build();
+        // Responses of the most read leaderboards are kept in memory, and invalidated by the topology when they change
+        LeaderboardCache cache = new LeaderboardCache(64 * 1024 * 1024);
 
         // set the required properties for running Kafka Streams
         Properties props = new Properties();
@@ -30,9 +31,24 @@ public class LeaderboardApp {
         // application and is made available through dedicated API methods
         props.put(StreamsConfig.APPLICATION_SERVER_CONFIG, "localhost:8080");
 
+        // Keep a standby copy of every store partition on another instance: it takes over faster on failure, and
+        // it can serve reads (see LeaderboardService, ?read=replicas)
+        props.put(StreamsConfig.NUM_STANDBY_REPLICAS_CONFIG, 1);
+
         // build the topology
+        // -Dleaderboard.globalPlayers=true joins the players through a GlobalKTable, which saves a repartition at
+        // the cost of a full copy of the players on every instance (see the readme)
+        Topology topology = Boolean.getBoolean("leaderboard.globalPlayers")
+                ? LeaderboardServiceTopology.buildWithGlobalPlayers(HighScores.DEFAULT_K, cache::invalidate, props)
+                : LeaderboardServiceTopology.build(HighScores.DEFAULT_K, cache::invalidate);
         System.out.println("Starting Video-game Leaderboard");
         KafkaStreams streams = new KafkaStreams(topology, props);
+        // the partitions we get after a rebalance may have been updated by another instance in the meantime
+        streams.setStateListener((newState, oldState) -> {
+            if (newState == KafkaStreams.State.REBALANCING) {
+                cache.invalidateAll();
+            }
+        });
         // close Kafka Streams when the JVM shuts down (e.g. SIGTERM)
         Runtime.getRuntime().addShutdownHook(new Thread(streams::close));
         // start streaming!
@@ -40,7 +56,7 @@ public class LeaderboardApp {
 
         // start the REST service
         HostInfo hostInfo = new HostInfo("localhost", 8080);
-        LeaderboardService service = new LeaderboardService(hostInfo, streams);
+        LeaderboardService service = new LeaderboardService(hostInfo, streams, cache);
         service.start();
     }
 }
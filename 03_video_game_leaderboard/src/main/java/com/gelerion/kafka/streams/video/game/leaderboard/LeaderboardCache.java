@@ -0,0 +1,72 @@
+package com.gelerion.kafka.streams.video.game.leaderboard;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * A read-through cache of serialized leaderboard responses, keyed by product id.
+ *
+ * A few popular games get most of the reads, and serving them from here saves the store lookup, the deserialization
+ * of the high scores and their encoding as JSON. The topology invalidates a product whenever its leaderboard is
+ * forwarded downstream (see {@link LeaderboardServiceTopology#build(int, java.util.function.Consumer)}), which the
+ * record cache of Kafka Streams does at the latest on commit, so a response is never staler than the commit
+ * interval.
+ *
+ * The cache is bounded by the total size of the responses it holds.
+ */
+public class LeaderboardCache {
+    private final Cache<String, byte[]> responses;
+    // bumped on every invalidation, see get
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public LeaderboardCache(long maximumBytes) {
+        this.responses = CacheBuilder.newBuilder()
+                .maximumWeight(maximumBytes)
+                .weigher((String productId, byte[] response) -> response.length)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * @param load reads and serializes the leaderboard, returns null if there is none (which isn't cached)
+     */
+    public byte[] get(String productId, Supplier<byte[]> load) {
+        byte[] response = responses.getIfPresent(productId);
+        if (response != null) {
+            return response;
+        }
+
+        // An update may be invalidated while we read the previous value from the store, in which case caching
+        // that value would keep it around until the next update. We don't cache what we read if anything was
+        // invalidated in the meantime, which is rare given that invalidations come in bursts, on commit
+        long before = invalidations.get();
+        response = load.get();
+        if (response != null && invalidations.get() == before) {
+            responses.put(productId, response);
+        }
+        return response;
+    }
+
+    public void invalidate(String productId) {
+        invalidations.incrementAndGet();
+        responses.invalidate(productId);
+    }
+
+    /** When the instance is assigned other partitions, their leaderboards may have changed elsewhere */
+    public void invalidateAll() {
+        invalidations.incrementAndGet();
+        responses.invalidateAll();
+    }
+
+    public CacheStats stats() {
+        return responses.stats();
+    }
+
+    public long size() {
+        return responses.size();
+    }
+}
@@ -1,21 +1,59 @@
 package com.gelerion.kafka.streams.video.game.leaderboard;
 
 import com.gelerion.kafka.streams.video.game.leaderboard.models.join.Enriched;
+import com.google.common.cache.CacheStats;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.annotations.SerializedName;
+import com.google.gson.reflect.TypeToken;
 import io.javalin.Javalin;
 import io.javalin.http.Context;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
+import okhttp3.RequestBody;
 import okhttp3.Response;
+import okhttp3.ResponseBody;
 import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.common.utils.Bytes;
 import org.apache.kafka.streams.KafkaStreams;
 import org.apache.kafka.streams.KeyQueryMetadata;
 import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.LagInfo;
 import org.apache.kafka.streams.StoreQueryParameters;
 import org.apache.kafka.streams.state.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.net.URLEncoder;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static io.javalin.plugin.json.JsonMapperKt.jsonMapper;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 /**
  * To access local state we’ll use Javalin to implement a REST service due to its simple API.
@@ -23,13 +61,48 @@ import java.util.Map;
  */
 @SuppressWarnings("all")
 public class LeaderboardService {
+    private static final Logger log = LoggerFactory.getLogger(LeaderboardService.class);
+    // an instance that doesn't answer in time is reported as missing rather than holding up the whole query
+    private static final Duration REMOTE_CONNECT_TIMEOUT = Duration.ofMillis(500);
+    private static final Duration REMOTE_CALL_TIMEOUT = Duration.ofSeconds(2);
+    static final int DEFAULT_PAGE_SIZE = 100;
+    static final int MAX_PAGE_SIZE = 1000;
+    // Keys are product ids, and the store orders them by their UTF-8 bytes. The range queries of this version of
+    // Kafka Streams need an upper bound, so we use the largest code point, which sorts after any such key
+    private static final String MAX_KEY = new String(Character.toChars(Character.MAX_CODE_POINT));
+    static final int DEFAULT_NEIGHBOURS = 5;
+    static final int MAX_NEIGHBOURS = 100;
+    // how often the replica lags are refreshed, which bounds how stale they are
+    private static final Duration LAG_REFRESH_INTERVAL = Duration.ofSeconds(1);
+    private static final Gson GSON = new Gson();
+    private static final Type LAGS_TYPE = new TypeToken<Map<String, Long>>() { }.getType();
+    private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+
     private final HostInfo hostInfo;
     private final KafkaStreams streams;
+    // serialized responses of the local leaderboards, null to always read the store
+    private final LeaderboardCache cache;
     private String storeName = "leaderboards";
+    // a single client, so that all queries share its connection pool and dispatcher threads
+    private final OkHttpClient client = new OkHttpClient.Builder()
+            .connectTimeout(REMOTE_CONNECT_TIMEOUT)
+            .callTimeout(REMOTE_CALL_TIMEOUT)
+            .build();
+    private final ReplicaLags replicaLags = new ReplicaLags(this::fetchLags, LAG_REFRESH_INTERVAL);
+    // the replica reads this instance has in flight, per instance
+    private final Map<HostInfo, AtomicInteger> inFlightReads = new ConcurrentHashMap<>();
 
     LeaderboardService(HostInfo hostInfo, KafkaStreams streams) {
+        this(hostInfo, streams, null);
+    }
+
+    /**
+     * @param cache must be invalidated by the topology, see {@link LeaderboardCache}
+     */
+    LeaderboardService(HostInfo hostInfo, KafkaStreams streams, LeaderboardCache cache) {
         this.hostInfo = hostInfo;
         this.streams = streams;
+        this.cache = cache;
     }
 
     void start() {
@@ -38,87 +111,355 @@ public class LeaderboardService {
         app.get("/leaderboard", this::getAll);
         /* Local key-value store query: approximate number of entries */
         app.get("/leaderboard/count/local", this::getCountLocal);
+        // registered before /leaderboard/{key}, which would match it as well
+        app.get("/leaderboard/count", this::getCount);
+        /* Hit rate of the local response cache */
+        app.get("/leaderboard/cache/stats", this::getCacheStats);
+        /* How far behind the local store partitions are, active and standby */
+        app.get("/leaderboard/lag/local", this::getLagLocal);
 
         app.get("/leaderboard/{key}", this::getKey);
-        app.get("/leaderboard/count", this::getCount);
+        /* The leaderboard of a game in an hourly, daily or weekly window */
+        app.get("/leaderboard/{key}/window/{start}", this::getWindow);
+        /* A player's rank in a game, with the players around it */
+        app.get("/leaderboard/{key}/player/{playerId}", this::getPlayerRank);
+        /* Many keys at once, with at most one request per instance */
+        app.post("/leaderboard/batch", this::getBatch);
     }
 
     private void getCountLocal(Context context) {
-        long count = 0L;
+        long count;
         try {
             count = getStore().approximateNumEntries();
         } catch (Exception e) {
-            //log.error("Could not get local leaderboard count", e);
-        } finally {
-            context.result(String.valueOf(count));
+            // not 0: the caller of getCount lists this instance as unavailable, rather than summing a wrong count
+            log.error("Could not get local leaderboard count", e);
+            context.status(503).result("the local leaderboard store isn't available");
+            return;
         }
+        context.result(String.valueOf(count));
     }
 
     private void getCount(Context context) {
         long count = getStore().approximateNumEntries();
 
+        // scatter the query to all the other instances at once, and gather the answers
+        RemoteResults<Long> remote = queryRemoteInstances("/leaderboard/count/local", Long::parseLong);
+        for (Long remoteCount : remote.results.values()) {
+            count += remoteCount;
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("count", count);
+        // the count is partial if some instances didn't answer, which are listed so that the caller can tell
+        result.put("complete", remote.unavailable.isEmpty());
+        result.put("unavailable_hosts", remote.unavailable);
+        context.json(result);
+    }
+
+    /**
+     * Sends the same request to every other instance that hosts (part of) the store, concurrently, and waits
+     * until each of them has answered, failed or timed out. Latency is that of the slowest instance rather than
+     * the sum of all of them.
+     */
+    <T> RemoteResults<T> queryRemoteInstances(String path, Function<String, T> parser) {
+        Map<HostInfo, CompletableFuture<T>> calls = new LinkedHashMap<>();
+        for (HostInfo host : remoteInstances()) {
+            calls.put(host, fetchFromRemoteInstance(host, path, parser));
+        }
+
+        RemoteResults<T> remote = new RemoteResults<>();
+        for (Map.Entry<HostInfo, CompletableFuture<T>> call : calls.entrySet()) {
+            HostInfo host = call.getKey();
+            try {
+                remote.results.put(host, call.getValue().join());
+            } catch (CompletionException e) {
+                log.warn("Could not query {}:{}{}", host.host(), host.port(), path, e.getCause());
+                remote.unavailable.add(host.host() + ":" + host.port());
+            }
+        }
+        return remote;
+    }
+
+    // the other instances that host (part of) the store, the local instance answers from its own store
+    List<HostInfo> remoteInstances() {
+        List<HostInfo> hosts = new ArrayList<>();
         for (StreamsMetadata metadata : streams.allMetadataForStore(storeName)) {
             if (!hostInfo.equals(metadata.hostInfo())) {
-                continue;
+                hosts.add(metadata.hostInfo());
             }
-            count += fetchCountFromRemoteInstance(
-                    metadata.hostInfo().host(),
-                    metadata.hostInfo().port());
         }
+        return hosts;
+    }
 
-        context.json(count);
+    private <T> CompletableFuture<T> fetchFromRemoteInstance(HostInfo host, String path, Function<String, T> parser) {
+        String url = String.format("http://%s:%d%s", host.host(), host.port(), path);
+        return call(new Request.Builder().url(url).build(), parser);
     }
 
-    long fetchCountFromRemoteInstance(String host, int port) {
-        OkHttpClient client = new OkHttpClient();
+    private <T> CompletableFuture<T> postToRemoteInstance(
+            HostInfo host, String path, String json, Function<String, T> parser) {
+        String url = String.format("http://%s:%d%s", host.host(), host.port(), path);
+        return call(new Request.Builder().url(url).post(RequestBody.create(json, JSON)).build(), parser);
+    }
 
-        String url = String.format("http://%s:%d/leaderboard/count/local", host, port);
-        Request request = new Request.Builder().url(url).build();
+    private <T> CompletableFuture<T> call(Request request, Function<String, T> parser) {
+        String url = request.url().toString();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        client.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                result.completeExceptionally(e);
+            }
 
-        try (Response response = client.newCall(request).execute()) {
-            return Long.parseLong(response.body().string());
-        } catch (Exception e) {
-            // log.error("Could not get leaderboard count", e);
-            return 0L;
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (ResponseBody body = response.body()) {
+                    if (!response.isSuccessful()) {
+                        throw new IOException("Unexpected response " + response.code() + " from " + url);
+                    }
+                    result.complete(parser.apply(body.string()));
+                } catch (Exception e) {
+                    result.completeExceptionally(e);
+                }
+            }
+        });
+        return result;
+    }
+
+    static class RemoteResults<T> {
+        final Map<HostInfo, T> results = new LinkedHashMap<>();
+        final List<String> unavailable = new ArrayList<>();
+    }
+
+    /**
+     * Without parameters, all the local leaderboards are streamed to the client as they are read from the store.
+     * With {@code ?limit=N} (and {@code &after=<productId>}, the {@code next} cursor of the previous page) one page
+     * of leaderboards is returned, ordered by product id. Either way, memory use doesn't depend on the store size.
+     *
+     * With {@code ?scope=global} the leaderboards of all the instances are merged, in the same order and with the
+     * same cursors, so that clients don't need to know which instances there are.
+     */
+    private void getAll(Context ctx) throws IOException {
+        boolean global = "global".equals(ctx.queryParam("scope"));
+        String after = ctx.queryParam("after");
+        String limit = ctx.queryParam("limit");
+        if (after == null && limit == null) {
+            if (global) {
+                streamGlobal(ctx);
+            } else {
+                streamAll(ctx);
+            }
+            return;
+        }
+
+        int pageSize;
+        try {
+            pageSize = limit == null ? DEFAULT_PAGE_SIZE : Integer.parseInt(limit);
+        } catch (NumberFormatException e) {
+            pageSize = -1;
+        }
+        if (pageSize <= 0 || pageSize > MAX_PAGE_SIZE) {
+            ctx.status(400).result("limit must be between 1 and " + MAX_PAGE_SIZE);
+            return;
+        }
+        ctx.json(global ? globalPage(after, pageSize) : localPage(after, pageSize));
+    }
+
+    Page localPage(String after, int limit) {
+        Page page = new Page();
+        // close the iterator to avoid memory leaks!
+        try (KeyValueIterator<String, HighScores> range = rangeAfter(after)) {
+            String last = null;
+            while (range.hasNext() && page.leaderboard.size() < limit) {
+                KeyValue<String, HighScores> next = range.next();
+                page.leaderboard.put(next.key, next.value.toList());
+                last = next.key;
+            }
+            // there is a next page only if there are more entries
+            page.next = range.hasNext() ? last : null;
         }
+        return page;
     }
 
-    private void getAll(Context ctx) {
-        Map<String, List<Enriched>> leaderboard = new HashMap<>();
+    /**
+     * Every instance returns (up to) the first {@code limit} leaderboards after the cursor. The instances hold
+     * distinct products, so the first {@code limit} of all of them together are the global page.
+     */
+    Map<String, Object> globalPage(String after, int limit) {
+        RemoteResults<Page> remote = queryRemoteInstances(pagePath(after, limit), LeaderboardService::parsePage);
+        List<Page> pages = new ArrayList<>(remote.results.values());
+        pages.add(localPage(after, limit));
 
-        KeyValueIterator<String, HighScores> range = getStore().all();
-        while (range.hasNext()) {
-            KeyValue<String, HighScores> next = range.next();
-            String game = next.key;
-            HighScores highScores = next.value;
-            leaderboard.put(game, highScores.toList());
+        TreeMap<String, List<Enriched>> merged = new TreeMap<>(MergedPages::compareKeys);
+        boolean more = false;
+        for (Page page : pages) {
+            merged.putAll(page.leaderboard);
+            more |= page.next != null;
         }
+
+        Page page = new Page();
+        String last = null;
+        for (Map.Entry<String, List<Enriched>> entry : merged.entrySet()) {
+            if (page.leaderboard.size() == limit) {
+                more = true;
+                break;
+            }
+            page.leaderboard.put(entry.getKey(), entry.getValue());
+            last = entry.getKey();
+        }
+        page.next = more ? last : null;
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("leaderboard", page.leaderboard);
+        result.put("next", page.next);
+        result.put("complete", remote.unavailable.isEmpty());
+        result.put("unavailable_hosts", remote.unavailable);
+        return result;
+    }
+
+    private void streamAll(Context ctx) throws IOException {
+        ctx.contentType("application/json");
+        // writing to the response directly sends the body in chunks, instead of buffering it in full
+        OutputStream body = ctx.res.getOutputStream();
+        Writer writer = new OutputStreamWriter(body, UTF_8);
+
+        writer.write('{');
         // close the iterator to avoid memory leaks!
-        range.close();
-        // return a JSON response
-        ctx.json(leaderboard);
+        try (KeyValueIterator<String, HighScores> range = getStore().all()) {
+            boolean first = true;
+            while (range.hasNext()) {
+                KeyValue<String, HighScores> next = range.next();
+                writeEntry(ctx, writer, next.key, next.value.toList(), first);
+                first = false;
+            }
+        }
+        writer.write('}');
+        writer.flush();
+    }
+
+    /**
+     * Streams the leaderboards of all the instances, merged by product id, as
+     * {"leaderboard": {...}, "complete": true, "unavailable_hosts": []}. The instances are read one page at a time,
+     * see {@link MergedPages}.
+     */
+    private void streamGlobal(Context ctx) throws IOException {
+        Map<String, Function<String, CompletableFuture<Page>>> fetchers = new LinkedHashMap<>();
+        fetchers.put(hostInfo.host() + ":" + hostInfo.port(),
+                after -> CompletableFuture.completedFuture(localPage(after, MAX_PAGE_SIZE)));
+        for (HostInfo host : remoteInstances()) {
+            fetchers.put(host.host() + ":" + host.port(), after -> fetchFromRemoteInstance(
+                    host, pagePath(after, MAX_PAGE_SIZE), LeaderboardService::parsePage));
+        }
+
+        ctx.contentType("application/json");
+        Writer writer = new OutputStreamWriter(ctx.res.getOutputStream(), UTF_8);
+        writer.write("{\"leaderboard\":{");
+        MergedPages merged = new MergedPages(fetchers);
+        boolean first = true;
+        while (merged.hasNext()) {
+            Map.Entry<String, List<Enriched>> next = merged.next();
+            writeEntry(ctx, writer, next.getKey(), next.getValue(), first);
+            first = false;
+        }
+        // instances may fail half way, so they are only reported at the end
+        writer.write("},\"complete\":" + merged.unavailable().isEmpty());
+        writer.write(",\"unavailable_hosts\":" + jsonMapper(ctx).toJsonString(merged.unavailable()) + "}");
+        writer.flush();
+    }
+
+    private static void writeEntry(Context ctx, Writer writer, String key, List<Enriched> highScores, boolean first)
+            throws IOException {
+        if (!first) {
+            writer.write(',');
+        }
+        // the JSON mapper passes strings through as they are, so the key is quoted separately
+        writer.write(new JsonPrimitive(key).toString());
+        writer.write(':');
+        writer.write(jsonMapper(ctx).toJsonString(highScores));
+    }
+
+    // the local page query of a remote instance
+    private static String pagePath(String after, int limit) {
+        String path = "/leaderboard?limit=" + limit;
+        if (after == null) {
+            return path;
+        }
+        try {
+            return path + "&after=" + URLEncoder.encode(after, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Page parsePage(String json) {
+        return GSON.fromJson(json, Page.class);
+    }
+
+    // the entries with a key greater than after, all of them if after is null
+    private KeyValueIterator<String, HighScores> rangeAfter(String after) {
+        if (after == null) {
+            return getStore().all();
+        }
+        KeyValueIterator<String, HighScores> range = getStore().range(after, MAX_KEY);
+        // the range is inclusive
+        if (range.hasNext() && range.peekNextKey().equals(after)) {
+            range.next();
+        }
+        return range;
+    }
+
+    /** A page of leaderboards, ordered by product id */
+    static class Page {
+        // product id -> high scores
+        Map<String, List<Enriched>> leaderboard = new LinkedHashMap<>();
+        // the after cursor of the next page, null on the last page
+        String next;
+
+        public Map<String, List<Enriched>> getLeaderboard() {
+            return leaderboard;
+        }
+
+        public String getNext() {
+            return next;
+        }
     }
 
     private void getKey(Context context) {
         String productId = context.pathParam("key");
 
+        String read = context.queryParam("read");
+        if ("local".equals(read)) {
+            // another instance routed the query to this replica, which answers from its store, active or standby
+            respond(context, readLocal(context, productId, true));
+            return;
+        }
+
         //discover the application instance (local or remote) that a specific key lives on
-        KeyQueryMetadata metadata = streams
-                .queryMetadataForKey(storeName, productId, Serdes.String().serializer());
+        KeyQueryMetadata metadata = queryMetadata(productId);
+
+        if ("replicas".equals(read)) {
+            getKeyFromReplicas(context, productId, metadata);
+            return;
+        }
 
         if (hostInfo.equals(metadata.activeHost())) {
-            HighScores highScores = getStore().get(productId);
+            // popular games are served from the cache, without reading the store and serializing the high scores
+            byte[] response = cache != null
+                    ? cache.get(productId, () -> readLocal(context, productId, false))
+                    : readLocal(context, productId, false);
 
             // The queryMetadataForKey method doesn't actually check to see if the key exists. It uses the default
             // stream partitioner to determine where the key would exist, if it existed. Therefore, we check
             // for null (which is returned if the key isn’t found) and return a 404 response if it doesn't exist.
-            if (highScores == null) {
+            if (response == null) {
                 // game wasn't found
                 context.status(404);
                 return;
             }
             // game was found, so return the high scores
-            context.json(highScores.toList());
+            context.contentType("application/json").result(response);
+            return;
         }
 
         // a remote instance has the key
@@ -129,7 +470,6 @@ public class LeaderboardService {
                         "http://%s:%d/leaderboard/%s",
                         remoteHost, remotePort, productId);
 
-        OkHttpClient client = new OkHttpClient();
         Request request = new Request.Builder().url(url).build();
 
         try (Response response = client.newCall(request).execute()) {
@@ -139,6 +479,340 @@ public class LeaderboardService {
         }
     }
 
+    /**
+     * The leaderboard of a game in a tumbling window, {@code ?size=hourly|daily|weekly} (daily by default), as
+     * {"window": "daily", "start": ..., "end": ..., "leaderboard": [...]}. {@code start} is in epoch milliseconds or
+     * an ISO-8601 instant, and may be any time within the window. Windows older than the retention of their size
+     * (see {@link LeaderboardWindow}) are gone, like windows without scores, and answer 404.
+     */
+    private void getWindow(Context context) {
+        String productId = context.pathParam("key");
+        LeaderboardWindow window;
+        long windowStart;
+        try {
+            String size = context.queryParam("size");
+            window = LeaderboardWindow.fromName(size == null ? "daily" : size);
+            windowStart = window.windowStart(parseTime(context.pathParam("start")));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            context.status(400).result(e.getMessage());
+            return;
+        }
+
+        // the windowed stores are partitioned like the all-time one, by product id
+        KeyQueryMetadata metadata = queryMetadata(productId);
+
+        if (hostInfo.equals(metadata.activeHost())) {
+            HighScores highScores = getWindowStore(window).fetch(productId, windowStart);
+            if (highScores == null) {
+                context.status(404);
+                return;
+            }
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("window", window.name().toLowerCase(Locale.ROOT));
+            result.put("start", windowStart);
+            result.put("end", windowStart + window.size().toMillis());
+            result.put("leaderboard", highScores.toList());
+            context.json(result);
+            return;
+        }
+
+        // a remote instance has the key
+        String url = String.format("http://%s:%d/leaderboard/%s/window/%d?size=%s",
+                metadata.activeHost().host(), metadata.activeHost().port(), productId, windowStart, window.name().toLowerCase(Locale.ROOT));
+        try (Response response = client.newCall(new Request.Builder().url(url).build()).execute()) {
+            context.status(response.code())
+                    .contentType("application/json")
+                    .result(response.body().bytes());
+        } catch (IOException e) {
+            log.warn("Could not read {} from {}", productId, url, e);
+            context.status(500);
+        }
+    }
+
+    /**
+     * The rank of a player in a game, by the player's best score, along with the {@code ?neighbours=N} (5 by default)
+     * players ranked just above and below:
+     * {"players": ..., "player": {"rank": ..., ...}, "above": [...], "below": [...]}.
+     * Unlike the leaderboards, this covers every player of the game, see {@link PlayerRankIndex}.
+     */
+    private void getPlayerRank(Context context) {
+        String productId = context.pathParam("key");
+        long playerId;
+        int neighbours;
+        try {
+            playerId = Long.parseLong(context.pathParam("playerId"));
+            neighbours = context.queryParam("neighbours") == null
+                    ? DEFAULT_NEIGHBOURS
+                    : Integer.parseInt(context.queryParam("neighbours"));
+        } catch (NumberFormatException e) {
+            neighbours = -1;
+            playerId = 0;
+        }
+        if (neighbours < 0 || neighbours > MAX_NEIGHBOURS) {
+            context.status(400).result("playerId must be a number, and neighbours between 0 and " + MAX_NEIGHBOURS);
+            return;
+        }
+
+        // the index is partitioned like the leaderboards, by product id
+        KeyQueryMetadata metadata = queryMetadata(productId);
+
+        if (hostInfo.equals(metadata.activeHost())) {
+            PlayerRankIndex.Standings standings = playerRanks().standings(productId, playerId, neighbours);
+            if (standings == null) {
+                context.status(404);
+                return;
+            }
+            context.json(standings);
+            return;
+        }
+
+        // a remote instance has the key
+        String url = String.format("http://%s:%d/leaderboard/%s/player/%d?neighbours=%d",
+                metadata.activeHost().host(), metadata.activeHost().port(), productId, playerId, neighbours);
+        try (Response response = client.newCall(new Request.Builder().url(url).build()).execute()) {
+            context.status(response.code())
+                    .contentType("application/json")
+                    .result(response.body().bytes());
+        } catch (IOException e) {
+            log.warn("Could not read {} from {}", productId, url, e);
+            context.status(500);
+        }
+    }
+
+    // epoch millis or an ISO-8601 instant, e.g. 2022-07-01T10:00:00Z
+    private static long parseTime(String time) {
+        try {
+            return Long.parseLong(time);
+        } catch (NumberFormatException e) {
+            return Instant.parse(time).toEpochMilli();
+        }
+    }
+
+    /**
+     * Takes a JSON array of product ids and returns their leaderboards as
+     * {"leaderboard": {...}, "not_found": [...], "complete": true, "unavailable_hosts": []}.
+     *
+     * The keys are grouped by the instance that hosts them: the local ones are read from the local store, and every
+     * other instance gets a single request with all of its keys, sent in parallel. With {@code ?scope=local}, all
+     * the keys are read from the local store, which is how the instances query each other.
+     */
+    private void getBatch(Context ctx) {
+        String[] productIds;
+        try {
+            productIds = GSON.fromJson(ctx.body(), String[].class);
+        } catch (JsonParseException e) {
+            productIds = null;
+        }
+        if (productIds == null || productIds.length > MAX_PAGE_SIZE) {
+            ctx.status(400).result("expected a JSON array of at most " + MAX_PAGE_SIZE + " product ids");
+            return;
+        }
+
+        boolean local = "local".equals(ctx.queryParam("scope"));
+        List<String> localKeys = new ArrayList<>();
+        Map<HostInfo, List<String>> remoteKeys = new LinkedHashMap<>();
+        for (String productId : productIds) {
+            HostInfo host = local ? hostInfo : queryMetadata(productId).activeHost();
+            if (hostInfo.equals(host)) {
+                localKeys.add(productId);
+            } else {
+                remoteKeys.computeIfAbsent(host, h -> new ArrayList<>()).add(productId);
+            }
+        }
+
+        // send the remote requests first, so that they are served while we read the local store
+        Map<HostInfo, CompletableFuture<Batch>> calls = new LinkedHashMap<>();
+        for (Map.Entry<HostInfo, List<String>> keys : remoteKeys.entrySet()) {
+            calls.put(keys.getKey(), postToRemoteInstance(keys.getKey(), "/leaderboard/batch?scope=local",
+                    GSON.toJson(keys.getValue()), json -> GSON.fromJson(json, Batch.class)));
+        }
+
+        Batch found = new Batch();
+        ReadOnlyKeyValueStore<String, HighScores> store = getStore();
+        for (String productId : localKeys) {
+            HighScores highScores = store.get(productId);
+            if (highScores == null) {
+                found.notFound.add(productId);
+            } else {
+                found.leaderboard.put(productId, highScores.toList());
+            }
+        }
+
+        List<String> unavailable = new ArrayList<>();
+        for (Map.Entry<HostInfo, CompletableFuture<Batch>> call : calls.entrySet()) {
+            HostInfo host = call.getKey();
+            try {
+                Batch batch = call.getValue().join();
+                found.leaderboard.putAll(batch.leaderboard);
+                found.notFound.addAll(batch.notFound);
+            } catch (CompletionException e) {
+                log.warn("Could not query {}:{} for {}", host.host(), host.port(), remoteKeys.get(host), e.getCause());
+                unavailable.add(host.host() + ":" + host.port());
+            }
+        }
+
+        // in the order of the request
+        Map<String, List<Enriched>> leaderboard = new LinkedHashMap<>();
+        for (String productId : productIds) {
+            List<Enriched> highScores = found.leaderboard.get(productId);
+            if (highScores != null) {
+                leaderboard.put(productId, highScores);
+            }
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("leaderboard", leaderboard);
+        result.put("not_found", found.notFound);
+        result.put("complete", unavailable.isEmpty());
+        result.put("unavailable_hosts", unavailable);
+        ctx.json(result);
+    }
+
+    /** The leaderboards returned by a batch query */
+    static class Batch {
+        Map<String, List<Enriched>> leaderboard = new LinkedHashMap<>();
+        @SerializedName("not_found")
+        List<String> notFound = new ArrayList<>();
+    }
+
+    KeyQueryMetadata queryMetadata(String productId) {
+        return streams.queryMetadataForKey(storeName, productId, Serdes.String().serializer());
+    }
+
+    /**
+     * Opt-in with {@code ?read=replicas&max_lag=N}: the query may be served by a standby replica as well as by the
+     * active one, as long as the replica is at most N records (0 by default) behind the changelog. This spreads the
+     * reads of a key over its replicas, and keeps them working while the active instance is unavailable, e.g.
+     * during a rebalance.
+     *
+     * The replicas within the bound are tried in order of the reads this instance has in flight to each of them
+     * (local first on ties), until one answers. The one that did is reported in the X-Served-By header.
+     */
+    private void getKeyFromReplicas(Context context, String productId, KeyQueryMetadata metadata) {
+        long maxLag;
+        try {
+            maxLag = context.queryParam("max_lag") == null ? 0 : Long.parseLong(context.queryParam("max_lag"));
+        } catch (NumberFormatException e) {
+            maxLag = -1;
+        }
+        if (maxLag < 0) {
+            context.status(400).result("max_lag must be a number of records");
+            return;
+        }
+
+        List<HostInfo> replicas = new ArrayList<>();
+        // the active host is unavailable while the partition is being reassigned
+        if (!HostInfo.unavailable().equals(metadata.activeHost())) {
+            replicas.add(metadata.activeHost());
+        }
+        replicas.addAll(metadata.standbyHosts());
+
+        List<HostInfo> eligible = new ArrayList<>();
+        for (HostInfo replica : replicas) {
+            Long lag = replicaLags.lag(replica, metadata.partition());
+            if (lag != null && lag <= maxLag) {
+                eligible.add(replica);
+            }
+        }
+        eligible.sort(Comparator
+                .comparingInt((HostInfo replica) -> inFlightReads(replica).get())
+                .thenComparing(replica -> !hostInfo.equals(replica)));
+
+        for (HostInfo replica : eligible) {
+            if (hostInfo.equals(replica)) {
+                context.header("X-Served-By", replica.host() + ":" + replica.port());
+                respond(context, readLocal(context, productId, true));
+                return;
+            }
+
+            AtomicInteger inFlight = inFlightReads(replica);
+            inFlight.incrementAndGet();
+            String url = String.format("http://%s:%d/leaderboard/%s?read=local",
+                    replica.host(), replica.port(), productId);
+            try (Response response = client.newCall(new Request.Builder().url(url).build()).execute()) {
+                // a replica that doesn't have the key answers 404 as well, so only errors move on to the next one
+                if (response.code() < 500) {
+                    context.header("X-Served-By", replica.host() + ":" + replica.port());
+                    context.status(response.code())
+                            .contentType("application/json")
+                            .result(response.body().bytes());
+                    return;
+                }
+            } catch (IOException e) {
+                log.warn("Could not read {} from {}:{}", productId, replica.host(), replica.port(), e);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+
+        context.status(503).result("no replica of " + productId + " within " + maxLag + " records");
+    }
+
+    private AtomicInteger inFlightReads(HostInfo replica) {
+        return inFlightReads.computeIfAbsent(replica, r -> new AtomicInteger());
+    }
+
+    private CompletableFuture<Map<Integer, Long>> fetchLags(HostInfo host) {
+        if (hostInfo.equals(host)) {
+            return CompletableFuture.supplyAsync(this::localLags);
+        }
+        return fetchFromRemoteInstance(host, "/leaderboard/lag/local", json -> {
+            Map<Integer, Long> lags = new HashMap<>();
+            for (Map.Entry<String, Long> lag : GSON.<Map<String, Long>>fromJson(json, LAGS_TYPE).entrySet()) {
+                lags.put(Integer.parseInt(lag.getKey()), lag.getValue());
+            }
+            return lags;
+        });
+    }
+
+    // offset lag by partition, of the local store partitions
+    Map<Integer, Long> localLags() {
+        Map<Integer, Long> lags = new HashMap<>();
+        Map<Integer, LagInfo> storeLags = streams.allLocalStorePartitionLags().get(storeName);
+        if (storeLags != null) {
+            for (Map.Entry<Integer, LagInfo> lag : storeLags.entrySet()) {
+                lags.put(lag.getKey(), lag.getValue().offsetLag());
+            }
+        }
+        return lags;
+    }
+
+    private void getLagLocal(Context context) {
+        context.json(localLags());
+    }
+
+    private static void respond(Context context, byte[] response) {
+        if (response == null) {
+            context.status(404);
+            return;
+        }
+        context.contentType("application/json").result(response);
+    }
+
+    // the JSON response of a local leaderboard, null if there is none
+    private byte[] readLocal(Context context, String productId, boolean includeStandbys) {
+        HighScores highScores = (includeStandbys ? getStaleStore() : getStore()).get(productId);
+        if (highScores == null) {
+            return null;
+        }
+        return jsonMapper(context).toJsonString(highScores.toList()).getBytes(UTF_8);
+    }
+
+    private void getCacheStats(Context context) {
+        if (cache == null) {
+            context.status(404).result("the response cache is disabled");
+            return;
+        }
+        CacheStats stats = cache.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("hit_count", stats.hitCount());
+        result.put("miss_count", stats.missCount());
+        result.put("hit_rate", stats.hitRate());
+        result.put("eviction_count", stats.evictionCount());
+        result.put("entries", cache.size());
+        context.json(result);
+    }
+
     ReadOnlyKeyValueStore<String, HighScores> getStore() {
         return streams.store(
                 StoreQueryParameters.fromNameAndType(
@@ -148,4 +822,32 @@ public class LeaderboardService {
         );
     }
 
+    ReadOnlyWindowStore<String, HighScores> getWindowStore(LeaderboardWindow window) {
+        return streams.store(
+                StoreQueryParameters.fromNameAndType(
+                        window.storeName(),
+                        QueryableStoreTypes.windowStore()
+                )
+        );
+    }
+
+    PlayerRankIndex playerRanks() {
+        return new PlayerRankIndex(streams.store(
+                StoreQueryParameters.fromNameAndType(
+                        PlayerRankIndex.STORE,
+                        QueryableStoreTypes.<Bytes, byte[]>keyValueStore()
+                )
+        ));
+    }
+
+    // the local store partitions, standby replicas included
+    ReadOnlyKeyValueStore<String, HighScores> getStaleStore() {
+        return streams.store(
+                StoreQueryParameters.fromNameAndType(
+                        storeName,
+                        QueryableStoreTypes.<String, HighScores>keyValueStore()
+                ).enableStaleStores()
+        );
+    }
+
 }
@@ -5,17 +5,40 @@ import com.gelerion.kafka.streams.video.game.leaderboard.models.Product;
 import com.gelerion.kafka.streams.video.game.leaderboard.models.ScoreEvent;
 import com.gelerion.kafka.streams.video.game.leaderboard.models.join.Enriched;
 import com.gelerion.kafka.streams.video.game.leaderboard.models.join.ScoreWithPlayer;
+import com.gelerion.kafka.streams.video.game.leaderboard.serialization.binary.BinarySerdes;
 import com.gelerion.kafka.streams.video.game.leaderboard.serialization.json.JsonSerdes;
 import org.apache.kafka.common.serialization.Serdes;
 import org.apache.kafka.common.utils.Bytes;
 import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.StreamsConfig;
 import org.apache.kafka.streams.Topology;
 import org.apache.kafka.streams.kstream.*;
 import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.Stores;
+import org.apache.kafka.streams.state.WindowStore;
+
+import java.util.Properties;
+import java.util.function.Consumer;
 
 public class LeaderboardServiceTopology {
 
     public static Topology build() {
+        return build(HighScores.DEFAULT_K);
+    }
+
+    /**
+     * @param highScoresPerGame the number of high scores kept per game (K)
+     */
+    public static Topology build(int highScoresPerGame) {
+        return build(highScoresPerGame, productId -> { });
+    }
+
+    /**
+     * @param highScoresPerGame the number of high scores kept per game (K)
+     * @param onUpdate          called with the product id whenever a leaderboard update is forwarded, e.g. to
+     *                          invalidate a {@link LeaderboardCache}
+     */
+    public static Topology build(int highScoresPerGame, Consumer<String> onUpdate) {
         StreamsBuilder builder = new StreamsBuilder();
 
         KStream<String, ScoreEvent> scoreEvents = builder
@@ -34,8 +57,10 @@ public class LeaderboardServiceTopology {
                 .globalTable("products", Consumed.with(Serdes.String(), JsonSerdes.Product()));
 
         // Joins
+        // The input topics are written as JSON by other applications, but the topics and stores that only this
+        // application reads (the repartition topics and the leaderboards store) use a compact binary format
         Joined<String, ScoreEvent, Player> playerJoinParams =
-                Joined.with(Serdes.String(), JsonSerdes.ScoreEvent(), JsonSerdes.Player());
+                Joined.with(Serdes.String(), BinarySerdes.ScoreEvent(), JsonSerdes.Player());
 
         ValueJoiner<ScoreEvent, Player, ScoreWithPlayer> scorePlayerJoiner = ScoreWithPlayer::new;
 
@@ -80,25 +105,80 @@ public class LeaderboardServiceTopology {
                 withPlayers.join(products, keyMapper, productJoiner);
         withProducts.print(Printed.<String, Enriched>toSysOut().withLabel("with-products"));
 
+        aggregateHighScores(builder, withProducts, highScoresPerGame, onUpdate);
+
+        return builder.build();
+    }
+
+    /**
+     * A variant of the topology with a single repartition instead of two: the players are joined through a
+     * GlobalKTable, so the score events don't need to be rekeyed (and shuffled) by player id first. They are only
+     * repartitioned once, by product id, for the aggregation.
+     *
+     * The price is that every instance keeps a full copy of the players, and that the join is no longer
+     * synchronized on time: a score is joined with whatever player profile the instance has at that point, like
+     * the products already are. The topology optimizations are enabled in {@code config}, which must be the
+     * configuration the application runs with.
+     *
+     * @param config the application configuration, {@link StreamsConfig#TOPOLOGY_OPTIMIZATION_CONFIG} is set to
+     *               {@link StreamsConfig#OPTIMIZE}
+     */
+    public static Topology buildWithGlobalPlayers(int highScoresPerGame, Consumer<String> onUpdate,
+                                                  Properties config) {
+        config.put(StreamsConfig.TOPOLOGY_OPTIMIZATION_CONFIG, StreamsConfig.OPTIMIZE);
+        StreamsBuilder builder = new StreamsBuilder();
+
+        // no rekeying, the score events are joined in whatever partition they were written to
+        KStream<byte[], ScoreEvent> scoreEvents = builder
+                .stream("score-events", Consumed.with(Serdes.ByteArray(), JsonSerdes.ScoreEvent()));
+
+        GlobalKTable<String, Player> players = builder
+                .globalTable("players", Consumed.with(Serdes.String(), JsonSerdes.Player()));
+        GlobalKTable<String, Product> products = builder
+                .globalTable("products", Consumed.with(Serdes.String(), JsonSerdes.Product()));
+
+        KStream<byte[], ScoreWithPlayer> withPlayers = scoreEvents.join(
+                players,
+                (key, scoreEvent) -> String.valueOf(scoreEvent.getPlayerId()),
+                ScoreWithPlayer::new);
+
+        KStream<byte[], Enriched> withProducts = withPlayers.join(
+                products,
+                (key, scoreWithPlayer) -> String.valueOf(scoreWithPlayer.getScoreEvent().getProductId()),
+                Enriched::new);
+
+        aggregateHighScores(builder, withProducts, highScoresPerGame, onUpdate);
+
+        // the optimizations are only applied when the configuration is passed to build
+        return builder.build(config);
+    }
+
+    private static <K> void aggregateHighScores(StreamsBuilder builder, KStream<K, Enriched> withProducts,
+                                                int highScoresPerGame, Consumer<String> onUpdate) {
         // Group the enriched product stream
         // Before you perform any stream or table aggregations in Kafka Streams, you must first group the KStream or
         // KTable that you plan to aggregate. The purpose of grouping is the same as rekeying records prior to joining:
         // to ensure the related records are processed by the same observer, or Kafka Streams task.
 
         //Since we want to calculate the high scores for each product ID, and since our enriched stream
-        // is currently keyed by player ID we need to repartition
-        KGroupedStream<String, Enriched> grouped = withProducts.groupBy(
-                (key, value) -> value.getProductId().toString(),
-                Grouped.with(Serdes.String(), JsonSerdes.Enriched()));
+        // is currently keyed by player ID (or not keyed at all) we need to repartition.
+        // The repartition is explicit, so that the all-time and the windowed aggregations and the player ranks share
+        // it (grouping with groupBy would repartition once per aggregation). It keeps the topic name groupBy gave it
+        KStream<String, Enriched> byProduct = withProducts
+                .selectKey((key, value) -> value.getProductId().toString())
+                .repartition(Repartitioned.with(Serdes.String(), BinarySerdes.Enriched()).withName("leaderboards"));
+        KGroupedStream<String, Enriched> grouped =
+                byProduct.groupByKey(Grouped.with(Serdes.String(), BinarySerdes.Enriched()));
 
         // Aggregations
         // When a new key is seen by our Kafka Streams topology, we need some way of initializing the aggregation.
         // The interface that helps us with this is Initializer
-        Initializer<HighScores> highScoresInitializer = HighScores::new;
+        Initializer<HighScores> highScoresInitializer = () -> new HighScores(highScoresPerGame);
 
         // Adder
         // The next thing we need to do in order to build a stream aggregator is to define the logic for combining
-        // two aggregates. This is accomplished using the Aggregator interface
+        // two aggregates. This is accomplished using the Aggregator interface.
+        // HighScores inserts the score in place, so no objects are allocated per score event
         Aggregator<String, Enriched, HighScores> highScoresAdder =
                 (key, value, aggregate) -> aggregate.add(value);
 
@@ -122,7 +202,7 @@ public class LeaderboardServiceTopology {
         Materialized<String, HighScores, KeyValueStore<Bytes, byte[]>> leaderboardMaterializer = Materialized
                 .<String, HighScores, KeyValueStore<Bytes, byte[]>>as("leaderboards")
                 .withKeySerde(Serdes.String())
-                .withValueSerde(JsonSerdes.HighScores());
+                .withValueSerde(BinarySerdes.HighScores());
 
         KTable<String, HighScores> highScores =
                 grouped.aggregate(
@@ -131,9 +211,34 @@ public class LeaderboardServiceTopology {
                         leaderboardMaterializer
                 );
 
-        highScores.toStream().to("high-scores");
-
-        return builder.build();
+        // downstream consumers read the high scores as JSON
+        highScores.toStream().to("high-scores", Produced.with(Serdes.String(), JsonSerdes.HighScores()));
+
+        // Updates are forwarded once they are in the store, when the record cache is flushed (at the latest on
+        // commit), which is when the responses cached by the service need to be invalidated
+        highScores.toStream().foreach((productId, updated) -> onUpdate.accept(productId));
+
+        // Windowed leaderboards
+        // The hourly, daily and weekly boards are aggregated the same way, in tumbling windows: a score only updates
+        // the board of the window it falls in, and the boards of windows past their retention are dropped with
+        // their store segment. They are only queried (see LeaderboardService), not written to a topic
+        for (LeaderboardWindow window : LeaderboardWindow.values()) {
+            grouped.windowedBy(TimeWindows.of(window.size()).grace(LeaderboardWindow.GRACE))
+                    .aggregate(
+                            highScoresInitializer,
+                            highScoresAdder,
+                            Materialized.<String, HighScores, WindowStore<Bytes, byte[]>>as(window.storeName())
+                                    .withKeySerde(Serdes.String())
+                                    .withValueSerde(BinarySerdes.HighScores())
+                                    .withRetention(window.retention()));
+        }
+
+        // Player ranks
+        // The top K only tells the rank of the best players. The best score of every player is kept in an index
+        // ordered by score as well (see PlayerRankIndex), from which the rank of any player can be read
+        builder.addStateStore(Stores.keyValueStoreBuilder(
+                Stores.persistentKeyValueStore(PlayerRankIndex.STORE), Serdes.Bytes(), Serdes.ByteArray()));
+        byProduct.process(PlayerRankProcessor::new, PlayerRankIndex.STORE);
     }
 
 }
@@ -0,0 +1,56 @@
+package com.gelerion.kafka.streams.video.game.leaderboard;
+
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * The tumbling windows the leaderboards are kept for, next to the all-time one. Each has its own window store,
+ * which keeps the boards of the windows that ended within its retention.
+ *
+ * Windows are aligned to the epoch, like all the tumbling windows of Kafka Streams, so a week starts on a Thursday
+ * (UTC), and a day at midnight UTC.
+ */
+public enum LeaderboardWindow {
+    HOURLY(Duration.ofHours(1), Duration.ofDays(2)),
+    DAILY(Duration.ofDays(1), Duration.ofDays(31)),
+    WEEKLY(Duration.ofDays(7), Duration.ofDays(7 * 53));
+
+    // how late a score may arrive and still count for its window, later ones only count for the all-time board
+    static final Duration GRACE = Duration.ofHours(1);
+
+    private final Duration size;
+    private final Duration retention;
+
+    LeaderboardWindow(Duration size, Duration retention) {
+        this.size = size;
+        this.retention = retention;
+    }
+
+    public Duration size() {
+        return size;
+    }
+
+    public Duration retention() {
+        return retention;
+    }
+
+    public String storeName() {
+        return "leaderboards-" + name().toLowerCase(Locale.ROOT);
+    }
+
+    /** The start of the window that contains {@code timestamp} (epoch millis) */
+    public long windowStart(long timestamp) {
+        return timestamp - Math.floorMod(timestamp, size.toMillis());
+    }
+
+    /**
+     * @param name hourly, daily or weekly, in any case
+     */
+    public static LeaderboardWindow fromName(String name) {
+        try {
+            return valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("unknown window " + name + ", expected hourly, daily or weekly");
+        }
+    }
+}
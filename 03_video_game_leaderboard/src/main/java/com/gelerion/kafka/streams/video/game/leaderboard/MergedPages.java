@@ -0,0 +1,127 @@
+package com.gelerion.kafka.streams.video.game.leaderboard;
+
+import com.gelerion.kafka.streams.video.game.leaderboard.models.join.Enriched;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/**
+ * Merges the leaderboards of several instances into a single stream ordered by product id.
+ *
+ * Every instance is read one page at a time, and the following page is requested as soon as a page arrives, so
+ * that it is (usually) there by the time it is needed. At most two pages per instance are held in memory, whatever
+ * the number of leaderboards. An instance that fails is dropped from the merge and reported by
+ * {@link #unavailable()}.
+ */
+class MergedPages implements Iterator<Map.Entry<String, List<Enriched>>> {
+    private static final Logger log = LoggerFactory.getLogger(MergedPages.class);
+
+    private final PriorityQueue<Source> sources =
+            new PriorityQueue<>((a, b) -> compareKeys(a.head.getKey(), b.head.getKey()));
+    private final List<String> unavailable = new ArrayList<>();
+
+    /**
+     * @param fetchers instance name -> fetches the page after the given cursor (null for the first page)
+     */
+    MergedPages(Map<String, Function<String, CompletableFuture<LeaderboardService.Page>>> fetchers) {
+        List<Source> started = new ArrayList<>();
+        // request all the first pages before waiting for any of them
+        for (Map.Entry<String, Function<String, CompletableFuture<LeaderboardService.Page>>> fetcher
+                : fetchers.entrySet()) {
+            started.add(new Source(fetcher.getKey(), fetcher.getValue()));
+        }
+        for (Source source : started) {
+            if (source.advance()) {
+                sources.add(source);
+            }
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !sources.isEmpty();
+    }
+
+    @Override
+    public Map.Entry<String, List<Enriched>> next() {
+        Source source = sources.poll();
+        if (source == null) {
+            throw new NoSuchElementException();
+        }
+        Map.Entry<String, List<Enriched>> entry = source.head;
+        if (source.advance()) {
+            sources.add(source);
+        }
+        return entry;
+    }
+
+    /** The instances that failed so far */
+    List<String> unavailable() {
+        return Collections.unmodifiableList(unavailable);
+    }
+
+    /**
+     * Orders keys the way the stores do, by their UTF-8 bytes, which is the order of their code points
+     * (String.compareTo compares UTF-16 chars, which differs for characters outside of the basic plane).
+     */
+    static int compareKeys(String a, String b) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            int x = a.codePointAt(i);
+            int y = b.codePointAt(j);
+            if (x != y) {
+                return Integer.compare(x, y);
+            }
+            i += Character.charCount(x);
+            j += Character.charCount(y);
+        }
+        return Integer.compare(a.length() - i, b.length() - j);
+    }
+
+    private final class Source {
+        private final String name;
+        private final Function<String, CompletableFuture<LeaderboardService.Page>> fetch;
+        private CompletableFuture<LeaderboardService.Page> pending;
+        private Iterator<Map.Entry<String, List<Enriched>>> entries = Collections.emptyIterator();
+        private Map.Entry<String, List<Enriched>> head;
+
+        Source(String name, Function<String, CompletableFuture<LeaderboardService.Page>> fetch) {
+            this.name = name;
+            this.fetch = fetch;
+            this.pending = fetch.apply(null);
+        }
+
+        // moves to the next entry, false once the instance has no more entries (or failed)
+        boolean advance() {
+            while (!entries.hasNext()) {
+                if (pending == null) {
+                    return false;
+                }
+                LeaderboardService.Page page;
+                try {
+                    page = pending.join();
+                } catch (CompletionException e) {
+                    log.warn("Could not read the leaderboards of {}", name, e.getCause());
+                    unavailable.add(name);
+                    return false;
+                }
+                // read ahead
+                pending = page.next != null ? fetch.apply(page.next) : null;
+                entries = page.leaderboard.entrySet().iterator();
+            }
+            head = entries.next();
+            return true;
+        }
+    }
+}
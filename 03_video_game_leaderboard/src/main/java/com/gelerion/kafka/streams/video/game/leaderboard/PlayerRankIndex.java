@@ -0,0 +1,308 @@
+package com.gelerion.kafka.streams.video.game.leaderboard;
+
+import org.apache.kafka.common.utils.Bytes;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.ReadOnlyKeyValueStore;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * The best score of every player of every game, ordered by score, to tell a player's rank (see
+ * {@link PlayerRankProcessor}, which maintains it).
+ *
+ * A single store holds three kinds of entries per game, which all start with the product id:
+ * <ul>
+ *   <li>one per player, keyed by (inverted score, player id), with the player name as the value. The store orders
+ *   them by rank, so the players around a given one are a range scan away</li>
+ *   <li>one per player, keyed by player id, with the best score as the value, to find the player's entry</li>
+ *   <li>counts of players per score prefix: the 64 bits of the inverted score are split into 16 groups of 4, and the
+ *   count of a prefix of L groups is the number of players whose score starts with it. The rank of a score is the sum
+ *   of the counts of the smaller siblings along its prefixes, which is at most 16 range scans of 15 entries each,
+ *   however many players there are. A scan of the player entries alone would take as long as the rank is high</li>
+ * </ul>
+ * Equal scores are ranked by player id, like in {@link HighScores}.
+ */
+public class PlayerRankIndex {
+    public static final String STORE = "player-ranks";
+
+    static final int LEVELS = 16;
+    static final int BITS_PER_LEVEL = 4;
+
+    private static final byte PLAYER = 1;
+    private static final byte BEST_SCORE = 2;
+    private static final byte COUNT = 3;
+
+    private final ReadOnlyKeyValueStore<Bytes, byte[]> store;
+
+    public PlayerRankIndex(ReadOnlyKeyValueStore<Bytes, byte[]> store) {
+        this.store = store;
+    }
+
+    /**
+     * @param neighbours how many players to return above and below the player
+     * @return the rank of the player in the game, with the players around it, null if the player has no score
+     */
+    public Standings standings(String productId, long playerId, int neighbours) {
+        byte[] best = store.get(bestScoreKey(productId, playerId));
+        if (best == null) {
+            return null;
+        }
+        long invertedScore = invertedScore(ByteBuffer.wrap(best).getDouble());
+        Bytes playerKey = playerKey(productId, invertedScore, playerId);
+        long rank = rank(productId, invertedScore, playerKey);
+
+        List<Standing> above = new ArrayList<>();
+        long firstAbove = Math.max(1, rank - neighbours);
+        Bytes from = firstAbove < rank ? select(productId, firstAbove) : null;
+        if (from != null) {
+            try (KeyValueIterator<Bytes, byte[]> players = store.range(from, playerKey)) {
+                long aboveRank = firstAbove;
+                while (players.hasNext()) {
+                    KeyValue<Bytes, byte[]> entry = players.next();
+                    if (entry.key.equals(playerKey)) {
+                        break;
+                    }
+                    above.add(standing(aboveRank++, entry));
+                }
+            }
+        }
+
+        Standing player = null;
+        List<Standing> below = new ArrayList<>();
+        try (KeyValueIterator<Bytes, byte[]> players = store.range(playerKey, lastPlayerKey(productId))) {
+            long belowRank = rank;
+            while (players.hasNext() && (player == null || below.size() < neighbours)) {
+                KeyValue<Bytes, byte[]> entry = players.next();
+                if (player == null) {
+                    player = standing(belowRank++, entry);
+                } else {
+                    below.add(standing(belowRank++, entry));
+                }
+            }
+        }
+        if (player == null) {
+            // the player's score was improved since we read it
+            return null;
+        }
+        return new Standings(count(productId), player, above, below);
+    }
+
+    // the number of players that rank before (inverted score, player id), plus one
+    private long rank(String productId, long invertedScore, Bytes playerKey) {
+        long rank = 1;
+        for (int level = 1; level <= LEVELS; level++) {
+            int group = group(invertedScore, level);
+            if (group == 0) {
+                continue;
+            }
+            long parent = prefix(invertedScore, level - 1);
+            long lastSibling = parent | ((long) (group - 1) << shift(level));
+            try (KeyValueIterator<Bytes, byte[]> counts = store.range(
+                    countKey(productId, level, parent), countKey(productId, level, lastSibling))) {
+                while (counts.hasNext()) {
+                    rank += ByteBuffer.wrap(counts.next().value).getLong();
+                }
+            }
+        }
+        // the players with the same score and a lower id
+        try (KeyValueIterator<Bytes, byte[]> ties = store.range(
+                playerKey(productId, invertedScore, Long.MIN_VALUE), playerKey)) {
+            while (ties.hasNext()) {
+                if (!ties.next().key.equals(playerKey)) {
+                    rank++;
+                }
+            }
+        }
+        return rank;
+    }
+
+    // the key of the player entry at the (1-based) rank, null if there are fewer players
+    private Bytes select(String productId, long rank) {
+        long skip = rank - 1;
+        long prefix = 0;
+        for (int level = 1; level <= LEVELS; level++) {
+            long lastSibling = prefix | (0xFL << shift(level));
+            boolean found = false;
+            try (KeyValueIterator<Bytes, byte[]> counts = store.range(
+                    countKey(productId, level, prefix), countKey(productId, level, lastSibling))) {
+                while (counts.hasNext() && !found) {
+                    KeyValue<Bytes, byte[]> count = counts.next();
+                    long players = ByteBuffer.wrap(count.value).getLong();
+                    if (skip < players) {
+                        byte[] key = count.key.get();
+                        prefix = ByteBuffer.wrap(key, key.length - Long.BYTES, Long.BYTES).getLong();
+                        found = true;
+                    } else {
+                        skip -= players;
+                    }
+                }
+            }
+            if (!found) {
+                return null;
+            }
+        }
+        // prefix is the whole score now, the players that share it are ordered by id
+        try (KeyValueIterator<Bytes, byte[]> ties = store.range(
+                playerKey(productId, prefix, Long.MIN_VALUE), playerKey(productId, prefix, Long.MAX_VALUE))) {
+            while (ties.hasNext()) {
+                Bytes key = ties.next().key;
+                if (skip-- == 0) {
+                    return key;
+                }
+            }
+        }
+        return null;
+    }
+
+    // the number of players of the game
+    private long count(String productId) {
+        long players = 0;
+        try (KeyValueIterator<Bytes, byte[]> counts = store.range(
+                countKey(productId, 1, 0), countKey(productId, 1, -1L))) {
+            while (counts.hasNext()) {
+                players += ByteBuffer.wrap(counts.next().value).getLong();
+            }
+        }
+        return players;
+    }
+
+    private static Standing standing(long rank, KeyValue<Bytes, byte[]> entry) {
+        ByteBuffer key = ByteBuffer.wrap(entry.key.get());
+        key.position(key.limit() - 2 * Long.BYTES);
+        double score = score(key.getLong());
+        long playerId = key.getLong() ^ Long.MIN_VALUE;
+        String playerName = entry.value.length == 0 ? null : new String(entry.value, UTF_8);
+        return new Standing(rank, playerId, playerName, score);
+    }
+
+    // Keys
+
+    // Higher scores first: the bits of a double, flipped so that they order like the double as unsigned numbers,
+    // and inverted
+    static long invertedScore(double score) {
+        long bits = Double.doubleToLongBits(score);
+        return ~(bits ^ ((bits >> 63) | Long.MIN_VALUE));
+    }
+
+    static double score(long invertedScore) {
+        long ordered = ~invertedScore;
+        return Double.longBitsToDouble(ordered ^ (~(ordered >> 63) | Long.MIN_VALUE));
+    }
+
+    // the first level groups of bits of the inverted score, the others cleared
+    static long prefix(long invertedScore, int level) {
+        return level == 0 ? 0 : invertedScore & (-1L << shift(level));
+    }
+
+    // the group of bits at the level (1 to 16), from the most significant
+    static int group(long invertedScore, int level) {
+        return (int) ((invertedScore >>> shift(level)) & 0xF);
+    }
+
+    private static int shift(int level) {
+        return Long.SIZE - level * BITS_PER_LEVEL;
+    }
+
+    // player ids are signed, and compared as unsigned bytes in the keys
+    static Bytes playerKey(String productId, long invertedScore, long playerId) {
+        return Bytes.wrap(key(productId, PLAYER, 2 * Long.BYTES)
+                .putLong(invertedScore)
+                .putLong(playerId ^ Long.MIN_VALUE)
+                .array());
+    }
+
+    private static Bytes lastPlayerKey(String productId) {
+        return playerKey(productId, -1L, Long.MAX_VALUE);
+    }
+
+    static Bytes bestScoreKey(String productId, long playerId) {
+        return Bytes.wrap(key(productId, BEST_SCORE, Long.BYTES)
+                .putLong(playerId ^ Long.MIN_VALUE)
+                .array());
+    }
+
+    static Bytes countKey(String productId, int level, long prefix) {
+        return Bytes.wrap(key(productId, COUNT, 1 + Long.BYTES)
+                .put((byte) level)
+                .putLong(prefix)
+                .array());
+    }
+
+    // the product id, length first so that no product id is the prefix of another one's entries
+    private static ByteBuffer key(String productId, byte kind, int length) {
+        byte[] product = productId.getBytes(UTF_8);
+        return ByteBuffer.allocate(2 + product.length + 1 + length)
+                .putShort((short) product.length)
+                .put(product)
+                .put(kind);
+    }
+
+    /** A player's rank, with the players around it */
+    public static class Standings {
+        private final long players;
+        private final Standing player;
+        private final List<Standing> above;
+        private final List<Standing> below;
+
+        Standings(long players, Standing player, List<Standing> above, List<Standing> below) {
+            this.players = players;
+            this.player = player;
+            this.above = above;
+            this.below = below;
+        }
+
+        /** The number of players of the game */
+        public long getPlayers() {
+            return players;
+        }
+
+        public Standing getPlayer() {
+            return player;
+        }
+
+        /** The players ranked just above, best first */
+        public List<Standing> getAbove() {
+            return above;
+        }
+
+        /** The players ranked just below, best first */
+        public List<Standing> getBelow() {
+            return below;
+        }
+    }
+
+    public static class Standing {
+        private final long rank;
+        private final long playerId;
+        private final String playerName;
+        private final double score;
+
+        Standing(long rank, long playerId, String playerName, double score) {
+            this.rank = rank;
+            this.playerId = playerId;
+            this.playerName = playerName;
+            this.score = score;
+        }
+
+        public long getRank() {
+            return rank;
+        }
+
+        public long getPlayerId() {
+            return playerId;
+        }
+
+        public String getPlayerName() {
+            return playerName;
+        }
+
+        public double getScore() {
+            return score;
+        }
+    }
+}
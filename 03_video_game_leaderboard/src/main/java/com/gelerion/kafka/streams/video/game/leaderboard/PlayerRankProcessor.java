@@ -0,0 +1,75 @@
+package com.gelerion.kafka.streams.video.game.leaderboard;
+
+import com.gelerion.kafka.streams.video.game.leaderboard.models.join.Enriched;
+import org.apache.kafka.common.utils.Bytes;
+import org.apache.kafka.streams.processor.Processor;
+import org.apache.kafka.streams.processor.ProcessorContext;
+import org.apache.kafka.streams.state.KeyValueStore;
+
+import java.nio.ByteBuffer;
+
+import static com.gelerion.kafka.streams.video.game.leaderboard.PlayerRankIndex.*;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Keeps the best score of every player per game in a {@link PlayerRankIndex}, from the enriched score events keyed
+ * by product id.
+ *
+ * A score that doesn't beat the player's best is ignored. A better one moves the player: the entry of the previous
+ * best score is removed and its prefix counts decremented before the new entry is added, all in the same task and
+ * therefore in the same commit. Replaying a score (e.g. after a failure) changes nothing, since it no longer beats
+ * the best one.
+ */
+public class PlayerRankProcessor implements Processor<String, Enriched> {
+    private KeyValueStore<Bytes, byte[]> store;
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void init(ProcessorContext context) {
+        store = (KeyValueStore<Bytes, byte[]>) context.getStateStore(PlayerRankIndex.STORE);
+    }
+
+    @Override
+    public void process(String productId, Enriched enriched) {
+        long playerId = enriched.getPlayerId();
+        double score = enriched.getScore();
+
+        Bytes bestScoreKey = bestScoreKey(productId, playerId);
+        byte[] best = store.get(bestScoreKey);
+        if (best != null) {
+            double bestScore = ByteBuffer.wrap(best).getDouble();
+            if (bestScore >= score) {
+                return;
+            }
+            long previous = invertedScore(bestScore);
+            store.delete(playerKey(productId, previous, playerId));
+            count(productId, previous, -1);
+        }
+
+        long invertedScore = invertedScore(score);
+        String playerName = enriched.getPlayerName();
+        store.put(playerKey(productId, invertedScore, playerId),
+                playerName == null ? new byte[0] : playerName.getBytes(UTF_8));
+        count(productId, invertedScore, 1);
+        store.put(bestScoreKey, ByteBuffer.allocate(Double.BYTES).putDouble(score).array());
+    }
+
+    // adds delta to the counts of all the prefixes of the score, the ones that drop to 0 are removed
+    private void count(String productId, long invertedScore, long delta) {
+        for (int level = 1; level <= LEVELS; level++) {
+            Bytes key = countKey(productId, level, prefix(invertedScore, level));
+            byte[] count = store.get(key);
+            long players = (count == null ? 0 : ByteBuffer.wrap(count).getLong()) + delta;
+            if (players == 0) {
+                store.delete(key);
+            } else {
+                store.put(key, ByteBuffer.allocate(Long.BYTES).putLong(players).array());
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        // the store is closed by Kafka Streams
+    }
+}
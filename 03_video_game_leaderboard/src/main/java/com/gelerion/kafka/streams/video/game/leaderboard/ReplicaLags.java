@@ -0,0 +1,91 @@
+package com.gelerion.kafka.streams.video.game.leaderboard;
+
+import org.apache.kafka.streams.state.HostInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * How far behind the changelog the store partitions of each instance are, in records.
+ *
+ * Finding the lags takes a request to the instance, which (through {@code KafkaStreams#allLocalStorePartitionLags})
+ * asks the brokers for the end offsets, so they are not fetched per query: the lags of an instance are refreshed in
+ * the background once they are older than {@code refreshInterval}, and queries use the latest ones in the meantime.
+ */
+class ReplicaLags {
+    private static final Logger log = LoggerFactory.getLogger(ReplicaLags.class);
+
+    private final Function<HostInfo, CompletableFuture<Map<Integer, Long>>> fetch;
+    private final long refreshIntervalMs;
+    private final Map<HostInfo, Snapshot> snapshots = new ConcurrentHashMap<>();
+
+    /**
+     * @param fetch the lags of the store partitions of an instance, by partition
+     */
+    ReplicaLags(Function<HostInfo, CompletableFuture<Map<Integer, Long>>> fetch, Duration refreshInterval) {
+        this.fetch = fetch;
+        this.refreshIntervalMs = refreshInterval.toMillis();
+    }
+
+    /**
+     * @return the lag of the partition on the instance, null if the instance doesn't host the partition or didn't
+     * report its lags
+     */
+    Long lag(HostInfo host, int partition) {
+        Map<Integer, Long> lags = lags(host);
+        return lags == null ? null : lags.get(partition);
+    }
+
+    private Map<Integer, Long> lags(HostInfo host) {
+        long now = System.currentTimeMillis();
+        Snapshot current = snapshots.get(host);
+        Snapshot latest = current;
+        if (current == null || now - current.fetchedAt > refreshIntervalMs) {
+            Snapshot refreshed = new Snapshot(now);
+            // a single refresh at a time
+            boolean won = current == null
+                    ? snapshots.putIfAbsent(host, refreshed) == null
+                    : snapshots.replace(host, current, refreshed);
+            if (won) {
+                fetch.apply(host).whenComplete((lags, e) -> {
+                    if (e != null) {
+                        refreshed.lags.completeExceptionally(e);
+                    } else {
+                        refreshed.lags.complete(lags);
+                    }
+                });
+            }
+            latest = snapshots.get(host);
+        }
+
+        // the previous lags, if there are any, are good enough while the refresh is running
+        if (current != null && isSuccessful(current.lags)) {
+            return current.lags.join();
+        }
+        try {
+            return latest.lags.join();
+        } catch (CompletionException e) {
+            log.debug("No lags for {}:{}", host.host(), host.port(), e.getCause());
+            return null;
+        }
+    }
+
+    private static boolean isSuccessful(CompletableFuture<?> future) {
+        return future.isDone() && !future.isCompletedExceptionally();
+    }
+
+    private static final class Snapshot {
+        private final long fetchedAt;
+        private final CompletableFuture<Map<Integer, Long>> lags = new CompletableFuture<>();
+
+        private Snapshot(long fetchedAt) {
+            this.fetchedAt = fetchedAt;
+        }
+    }
+}
@@ -17,11 +17,20 @@ public class Enriched implements Comparable<Enriched> {
         this.score = scoreEventWithPlayer.getScoreEvent().getScore();
     }
 
+    public Enriched(Long playerId, Long productId, String playerName, String gameName, Double score) {
+        this.playerId = playerId;
+        this.productId = productId;
+        this.playerName = playerName;
+        this.gameName = gameName;
+        this.score = score;
+    }
+
     @Override
-    // In order for the TreeSet to know how to sort Enriched objects (and therefore, be able to identify the Enriched
-    // record with the lowest score to remove when our highScores aggregate exceeds three values
+    // Highest scores first. Equal scores are ordered by player id, otherwise sorted collections would consider
+    // players with the same score as duplicates
     public int compareTo(Enriched o) {
-        return Double.compare(o.score, score);
+        int byScore = Double.compare(o.score, score);
+        return byScore != 0 ? byScore : Long.compare(playerId, o.playerId);
     }
 
     public Long getPlayerId() {
@@ -0,0 +1,10 @@
+package com.gelerion.kafka.streams.video.game.leaderboard.serialization.binary;
+
+/**
+ * The binary encoding of one type, without the version byte.
+ */
+interface BinaryCodec<T> {
+    void write(T value, BinaryOutput out);
+
+    T read(BinaryInput in);
+}
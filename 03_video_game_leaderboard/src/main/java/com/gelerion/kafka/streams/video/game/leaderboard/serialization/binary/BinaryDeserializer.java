@@ -0,0 +1,44 @@
+package com.gelerion.kafka.streams.video.game.leaderboard.serialization.binary;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+
+/**
+ * Reads values written by {@link BinarySerializer}.
+ *
+ * Stores, changelogs and repartition topics written by earlier versions of the application contain JSON. A JSON
+ * object always starts with '{', which is never used as a version byte, so such entries are handed to the JSON
+ * deserializer instead. They are rewritten in the binary format the next time they are updated.
+ */
+class BinaryDeserializer<T> implements Deserializer<T> {
+    private static final int JSON_OBJECT = '{';
+
+    private final int version;
+    private final BinaryCodec<T> codec;
+    private final Deserializer<T> json;
+
+    BinaryDeserializer(int version, BinaryCodec<T> codec, Deserializer<T> json) {
+        this.version = version;
+        this.codec = codec;
+        this.json = json;
+    }
+
+    @Override
+    public T deserialize(String topic, byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        if (data.length == 0) {
+            throw new SerializationException("Empty record in topic " + topic);
+        }
+        int recordVersion = data[0] & 0xFF;
+        if (recordVersion == version) {
+            return codec.read(new BinaryInput(data, 1));
+        }
+        if (recordVersion == JSON_OBJECT) {
+            return json.deserialize(topic, data);
+        }
+        throw new SerializationException(
+                "Unsupported format version " + recordVersion + " in topic " + topic + ", expected " + version);
+    }
+}
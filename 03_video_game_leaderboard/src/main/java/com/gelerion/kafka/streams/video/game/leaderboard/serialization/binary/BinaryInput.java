@@ -0,0 +1,82 @@
+package com.gelerion.kafka.streams.video.game.leaderboard.serialization.binary;
+
+import org.apache.kafka.common.errors.SerializationException;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the encodings written by {@link BinaryOutput}.
+ */
+final class BinaryInput {
+    private final byte[] bytes;
+    private int position;
+
+    BinaryInput(byte[] bytes, int offset) {
+        this.bytes = bytes;
+        this.position = offset;
+    }
+
+    int readByte() {
+        ensureAvailable(1);
+        return bytes[position++] & 0xFF;
+    }
+
+    int readVarInt() {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new SerializationException("Malformed varint at position " + position);
+    }
+
+    long readVarLong() {
+        long zigZag = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            zigZag |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (zigZag >>> 1) ^ -(zigZag & 1);
+            }
+        }
+        throw new SerializationException("Malformed varlong at position " + position);
+    }
+
+    Long readNullableLong() {
+        return readByte() == 0 ? null : readVarLong();
+    }
+
+    double readDouble() {
+        ensureAvailable(8);
+        long bits = 0;
+        for (int i = 0; i < 8; i++) {
+            bits = (bits << 8) | (bytes[position++] & 0xFF);
+        }
+        return Double.longBitsToDouble(bits);
+    }
+
+    Double readNullableDouble() {
+        return readByte() == 0 ? null : readDouble();
+    }
+
+    String readString() {
+        int length = readVarInt() - 1;
+        if (length < 0) {
+            return null;
+        }
+        ensureAvailable(length);
+        String value = new String(bytes, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return value;
+    }
+
+    private void ensureAvailable(int length) {
+        if (length > bytes.length - position) {
+            throw new SerializationException(
+                    "Truncated record: " + length + " bytes needed at position " + position + " of " + bytes.length);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.gelerion.kafka.streams.video.game.leaderboard.serialization.binary;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A growable byte buffer with the primitive encodings of the binary format:
+ * <ul>
+ *   <li>ids: zig-zag varints, 1-2 bytes for most ids</li>
+ *   <li>scores: fixed 8 byte IEEE 754 doubles, big endian</li>
+ *   <li>strings: a varint length followed by the UTF-8 bytes</li>
+ * </ul>
+ * Nullable values are prefixed with a presence byte (strings use length + 1, 0 meaning null).
+ */
+final class BinaryOutput {
+    private byte[] bytes = new byte[256];
+    private int position;
+
+    void reset() {
+        position = 0;
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(bytes, position);
+    }
+
+    void writeByte(int value) {
+        ensureCapacity(1);
+        bytes[position++] = (byte) value;
+    }
+
+    void writeVarInt(int value) {
+        ensureCapacity(5);
+        while ((value & ~0x7F) != 0) {
+            bytes[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[position++] = (byte) value;
+    }
+
+    void writeVarLong(long value) {
+        ensureCapacity(10);
+        // zig-zag, so that small negative values stay small as well
+        long zigZag = (value << 1) ^ (value >> 63);
+        while ((zigZag & ~0x7FL) != 0) {
+            bytes[position++] = (byte) ((zigZag & 0x7F) | 0x80);
+            zigZag >>>= 7;
+        }
+        bytes[position++] = (byte) zigZag;
+    }
+
+    void writeNullableLong(Long value) {
+        writeByte(value == null ? 0 : 1);
+        if (value != null) {
+            writeVarLong(value);
+        }
+    }
+
+    void writeDouble(double value) {
+        ensureCapacity(8);
+        long bits = Double.doubleToRawLongBits(value);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            bytes[position++] = (byte) (bits >>> shift);
+        }
+    }
+
+    void writeNullableDouble(Double value) {
+        writeByte(value == null ? 0 : 1);
+        if (value != null) {
+            writeDouble(value);
+        }
+    }
+
+    void writeString(String value) {
+        if (value == null) {
+            writeVarInt(0);
+            return;
+        }
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(utf8.length + 1);
+        ensureCapacity(utf8.length);
+        System.arraycopy(utf8, 0, bytes, position, utf8.length);
+        position += utf8.length;
+    }
+
+    private void ensureCapacity(int length) {
+        if (position + length > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, position + length));
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.gelerion.kafka.streams.video.game.leaderboard.serialization.binary;
+
+import com.gelerion.kafka.streams.video.game.leaderboard.HighScores;
+import com.gelerion.kafka.streams.video.game.leaderboard.models.Player;
+import com.gelerion.kafka.streams.video.game.leaderboard.models.Product;
+import com.gelerion.kafka.streams.video.game.leaderboard.models.ScoreEvent;
+import com.gelerion.kafka.streams.video.game.leaderboard.models.join.Enriched;
+import com.gelerion.kafka.streams.video.game.leaderboard.serialization.json.JsonSerdes;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serdes;
+
+/**
+ * Compact, versioned binary serdes for the internal topics and stores: varint ids, length-prefixed UTF-8 strings
+ * and fixed 8 byte scores, behind a one byte format version. Every deserializer still reads the JSON written by
+ * {@link JsonSerdes}, so an application can be upgraded in place.
+ */
+public class BinarySerdes {
+    // bump whenever an encoding changes, and keep reading the previous version until its entries are gone
+    private static final int VERSION = 1;
+
+    public static Serde<HighScores> HighScores() {
+        return serde(new HighScoresCodec(), JsonSerdes.HighScores());
+    }
+
+    public static Serde<Enriched> Enriched() {
+        return serde(new EnrichedCodec(), JsonSerdes.Enriched());
+    }
+
+    public static Serde<ScoreEvent> ScoreEvent() {
+        return serde(new ScoreEventCodec(), JsonSerdes.ScoreEvent());
+    }
+
+    public static Serde<Player> Player() {
+        return serde(new PlayerCodec(), JsonSerdes.Player());
+    }
+
+    public static Serde<Product> Product() {
+        return serde(new ProductCodec(), JsonSerdes.Product());
+    }
+
+    private static <T> Serde<T> serde(BinaryCodec<T> codec, Serde<T> json) {
+        return Serdes.serdeFrom(
+                new BinarySerializer<>(VERSION, codec),
+                new BinaryDeserializer<>(VERSION, codec, json.deserializer()));
+    }
+
+    static class HighScoresCodec implements BinaryCodec<HighScores> {
+        @Override
+        public void write(HighScores highScores, BinaryOutput out) {
+            out.writeVarInt(highScores.k());
+            out.writeNullableLong(highScores.getProductId());
+            out.writeString(highScores.getGameName());
+            out.writeVarInt(highScores.size());
+            for (int rank = 1; rank <= highScores.size(); rank++) {
+                out.writeDouble(highScores.scoreAt(rank));
+                out.writeVarLong(highScores.playerIdAt(rank));
+                out.writeString(highScores.playerNameAt(rank));
+            }
+        }
+
+        @Override
+        public HighScores read(BinaryInput in) {
+            HighScores highScores = new HighScores(in.readVarInt(), in.readNullableLong(), in.readString());
+            int size = in.readVarInt();
+            for (int i = 0; i < size; i++) {
+                highScores.offer(in.readDouble(), in.readVarLong(), in.readString());
+            }
+            return highScores;
+        }
+    }
+
+    static class EnrichedCodec implements BinaryCodec<Enriched> {
+        @Override
+        public void write(Enriched enriched, BinaryOutput out) {
+            out.writeNullableLong(enriched.getPlayerId());
+            out.writeNullableLong(enriched.getProductId());
+            out.writeString(enriched.getPlayerName());
+            out.writeString(enriched.getGameName());
+            out.writeNullableDouble(enriched.getScore());
+        }
+
+        @Override
+        public Enriched read(BinaryInput in) {
+            return new Enriched(
+                    in.readNullableLong(), in.readNullableLong(), in.readString(), in.readString(),
+                    in.readNullableDouble());
+        }
+    }
+
+    static class ScoreEventCodec implements BinaryCodec<ScoreEvent> {
+        @Override
+        public void write(ScoreEvent scoreEvent, BinaryOutput out) {
+            out.writeNullableLong(scoreEvent.getPlayerId());
+            out.writeNullableLong(scoreEvent.getProductId());
+            out.writeNullableDouble(scoreEvent.getScore());
+        }
+
+        @Override
+        public ScoreEvent read(BinaryInput in) {
+            ScoreEvent scoreEvent = new ScoreEvent();
+            scoreEvent.setPlayerId(in.readNullableLong());
+            scoreEvent.setProductId(in.readNullableLong());
+            scoreEvent.setScore(in.readNullableDouble());
+            return scoreEvent;
+        }
+    }
+
+    static class PlayerCodec implements BinaryCodec<Player> {
+        @Override
+        public void write(Player player, BinaryOutput out) {
+            out.writeNullableLong(player.getId());
+            out.writeString(player.getName());
+        }
+
+        @Override
+        public Player read(BinaryInput in) {
+            Player player = new Player();
+            player.setId(in.readNullableLong());
+            player.setName(in.readString());
+            return player;
+        }
+    }
+
+    static class ProductCodec implements BinaryCodec<Product> {
+        @Override
+        public void write(Product product, BinaryOutput out) {
+            out.writeNullableLong(product.getId());
+            out.writeString(product.getName());
+        }
+
+        @Override
+        public Product read(BinaryInput in) {
+            Product product = new Product();
+            product.setId(in.readNullableLong());
+            product.setName(in.readString());
+            return product;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.gelerion.kafka.streams.video.game.leaderboard.serialization.binary;
+
+import org.apache.kafka.common.serialization.Serializer;
+
+/**
+ * Writes a version byte followed by the binary encoding of the value. Serdes are shared by all stream threads,
+ * so every thread gets its own output buffer, which is reused for all the records it serializes.
+ */
+class BinarySerializer<T> implements Serializer<T> {
+    private static final ThreadLocal<BinaryOutput> OUTPUT = ThreadLocal.withInitial(BinaryOutput::new);
+
+    private final int version;
+    private final BinaryCodec<T> codec;
+
+    BinarySerializer(int version, BinaryCodec<T> codec) {
+        this.version = version;
+        this.codec = codec;
+    }
+
+    @Override
+    public byte[] serialize(String topic, T value) {
+        if (value == null) {
+            return null;
+        }
+        BinaryOutput out = OUTPUT.get();
+        out.reset();
+        out.writeByte(version);
+        codec.write(value, out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,43 @@
+package com.gelerion.kafka.streams.video.game.leaderboard.serialization.json;
+
+import com.gelerion.kafka.streams.video.game.leaderboard.HighScores;
+import com.gelerion.kafka.streams.video.game.leaderboard.models.join.Enriched;
+import com.google.gson.FieldNamingPolicy;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import static com.gelerion.kafka.streams.video.game.leaderboard.serialization.json.HighScoresJsonSerializer.ENTRIES;
+import static com.gelerion.kafka.streams.video.game.leaderboard.serialization.json.HighScoresJsonSerializer.K;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Reads the layout written by {@link HighScoresJsonSerializer}, as well as the one written when high scores were
+ * kept in a sorted set (the same, without "k", i.e. a board of {@link HighScores#DEFAULT_K}). The entries are added
+ * one by one, so they end up in the current order.
+ */
+class HighScoresJsonDeserializer implements Deserializer<HighScores> {
+    private final Gson gson =
+            new GsonBuilder()
+                    .setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES)
+                    .create();
+
+    @Override
+    public HighScores deserialize(String topic, byte[] data) {
+        if (data == null) {
+            return null;
+        }
+
+        JsonObject json = new JsonParser().parse(new String(data, UTF_8)).getAsJsonObject();
+        HighScores highScores = json.has(K) ? new HighScores(json.get(K).getAsInt()) : new HighScores();
+        if (json.has(ENTRIES)) {
+            for (JsonElement entry : json.getAsJsonArray(ENTRIES)) {
+                highScores.add(gson.fromJson(entry, Enriched.class));
+            }
+        }
+        return highScores;
+    }
+}
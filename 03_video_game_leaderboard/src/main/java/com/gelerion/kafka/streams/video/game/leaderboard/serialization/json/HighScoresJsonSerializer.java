@@ -0,0 +1,35 @@
+package com.gelerion.kafka.streams.video.game.leaderboard.serialization.json;
+
+import com.gelerion.kafka.streams.video.game.leaderboard.HighScores;
+import com.google.gson.FieldNamingPolicy;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes {@link HighScores} as {"k": 3, "high_scores": [enriched, ...]}, highest score first. This is the layout
+ * consumers of the high-scores topic have always read, with the board size added.
+ */
+class HighScoresJsonSerializer implements Serializer<HighScores> {
+    static final String K = "k";
+    static final String ENTRIES = "high_scores";
+
+    private final Gson gson =
+            new GsonBuilder()
+                    .setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES)
+                    .create();
+
+    @Override
+    public byte[] serialize(String topic, HighScores highScores) {
+        if (highScores == null) {
+            return null;
+        }
+        JsonObject json = new JsonObject();
+        json.addProperty(K, highScores.k());
+        json.add(ENTRIES, gson.toJsonTree(highScores.toList()));
+        return gson.toJson(json).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -11,8 +11,8 @@ import org.apache.kafka.common.serialization.Serdes;
 public class JsonSerdes {
 
     public static Serde<HighScores> HighScores() {
-        JsonSerializer<HighScores> serializer = new JsonSerializer<>();
-        JsonDeserializer<HighScores> deserializer = new JsonDeserializer<>(HighScores.class);
+        HighScoresJsonSerializer serializer = new HighScoresJsonSerializer();
+        HighScoresJsonDeserializer deserializer = new HighScoresJsonDeserializer();
         return Serdes.serdeFrom(serializer, deserializer);
     }
 
@@ -0,0 +1,57 @@
+package com.gelerion.kafka.streams.patient.monitoring.times.extractors;
+
+import com.gelerion.kafka.streams.patient.monitoring.models.Pulse;
+import com.gelerion.kafka.streams.patient.monitoring.serialization.json.JsonSerdes;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link VitalTimestampExtractor} with the {@link Instant#parse} it replaced, on pulse readings like the
+ * ones in data/pulse-events.json: two per second and patient, so consecutive readings share their date and hour.
+ *
+ * Scores are records/s, the allocation rate comes from the gc profiler (see build.gradle).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(VitalTimestampExtractorBenchmark.RECORDS)
+public class VitalTimestampExtractorBenchmark {
+    static final int RECORDS = 1_000;
+
+    private final VitalTimestampExtractor extractor = new VitalTimestampExtractor();
+    private final List<ConsumerRecord<Object, Object>> records = new ArrayList<>(RECORDS);
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Deserializer<Pulse> deserializer = JsonSerdes.Pulse().deserializer();
+        Instant timestamp = Instant.parse("2020-11-23T09:02:00.000Z");
+        for (int i = 0; i < RECORDS; i++) {
+            byte[] json = ("{\"timestamp\": \"" + timestamp.plusMillis(500L * i) + "\"}")
+                    .getBytes(StandardCharsets.UTF_8);
+            Pulse pulse = deserializer.deserialize("pulse-events", json);
+            records.add(new ConsumerRecord<>("pulse-events", 0, i, "1", pulse));
+        }
+    }
+
+    @Benchmark
+    public void instantParse(Blackhole blackhole) {
+        for (ConsumerRecord<Object, Object> record : records) {
+            blackhole.consume(Instant.parse(((Pulse) record.value()).getTimestamp()).toEpochMilli());
+        }
+    }
+
+    @Benchmark
+    public void extractor(Blackhole blackhole) {
+        for (ConsumerRecord<Object, Object> record : records) {
+            blackhole.consume(extractor.extract(record, -1));
+        }
+    }
+}
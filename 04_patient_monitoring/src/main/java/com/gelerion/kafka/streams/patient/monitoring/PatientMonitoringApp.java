@@ -1,5 +1,7 @@
 package com.gelerion.kafka.streams.patient.monitoring;
 
+import com.gelerion.kafka.streams.patient.monitoring.processors.SuppressionGauges;
+import com.gelerion.kafka.streams.patient.monitoring.times.extractors.VitalTimestampExtractor;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.streams.KafkaStreams;
 import org.apache.kafka.streams.StreamsConfig;
@@ -11,7 +13,19 @@ import java.util.Properties;
 public class PatientMonitoringApp {
 
     public static void main(String[] args) {
-        Topology topology = PatientMonitoringTopology.build();
+        VitalTimestampExtractor timestampExtractor = new VitalTimestampExtractor();
+        // -Dpulse.counting=coalesced counts the pulses in a record cache between commits, instead of writing every
+        // pulse to the window store, -Dpulse.counting=early forwards the heart rates as soon as they are high, over sliding
+        // windows (see the readme)
+        PulseCounting pulseCounting = PulseCounting.fromName(System.getProperty("pulse.counting", "suppressed"));
+        // -Dvitals.join=latest joins the latest high heart rate and body temperature of each patient only, instead of
+        // every reading of the join window (see the readme). It is the only join of the early heart rates, which may
+        // be retracted
+        VitalsJoin vitalsJoin = VitalsJoin.fromName(System.getProperty(
+                "vitals.join", pulseCounting == PulseCounting.EARLY ? "latest" : "windowed"));
+        SuppressionGauges suppressionGauges = new SuppressionGauges();
+        Topology topology =
+                PatientMonitoringTopology.build(timestampExtractor, pulseCounting, vitalsJoin, suppressionGauges);
 
         String host = "localhost";
         int port = 8091;
@@ -22,7 +36,10 @@ public class PatientMonitoringApp {
         Properties props = new Properties();
         props.put(StreamsConfig.APPLICATION_ID_CONFIG, "dev");
         props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:29092");
-        props.put(StreamsConfig.CACHE_MAX_BYTES_BUFFERING_CONFIG, 0);
+        // the coalesced counting needs a record cache, it is the only store with caching enabled then
+        props.put(StreamsConfig.CACHE_MAX_BYTES_BUFFERING_CONFIG, pulseCounting == PulseCounting.COALESCED
+                ? PatientMonitoringTopology.COALESCED_CACHE_MAX_BYTES
+                : 0);
         props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "latest");
         props.put(StreamsConfig.APPLICATION_SERVER_CONFIG, endpoint);
         props.put(StreamsConfig.STATE_DIR_CONFIG, stateDir);
@@ -43,7 +60,8 @@ public class PatientMonitoringApp {
 
         // start the REST service
         HostInfo hostInfo = new HostInfo(host, port);
-        PatientMonitoringService service = new PatientMonitoringService(hostInfo, streams);
+        PatientMonitoringService service =
+                new PatientMonitoringService(hostInfo, streams, pulseCounting, timestampExtractor, suppressionGauges);
         service.start();
     }
 }
@@ -1,6 +1,8 @@
 package com.gelerion.kafka.streams.patient.monitoring;
 
 import com.gelerion.kafka.streams.patient.monitoring.models.CombinedVitals;
+import com.gelerion.kafka.streams.patient.monitoring.processors.SuppressionGauges;
+import com.gelerion.kafka.streams.patient.monitoring.times.extractors.VitalTimestampExtractor;
 import io.javalin.Javalin;
 import io.javalin.http.Context;
 import org.apache.kafka.streams.KafkaStreams;
@@ -16,28 +18,89 @@ import java.lang.invoke.MethodHandles;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 public class PatientMonitoringService {
     private final HostInfo hostInfo;
     private final KafkaStreams streams;
+    // how the topology counts the pulses, the early counting has no pulse-counts store to query
+    private final PulseCounting pulseCounting;
+
+    // the extractor of the topology, null if its counters aren't reported
+    private final VitalTimestampExtractor timestampExtractor;
+    // the suppression buffers of the topology, null if they aren't reported
+    private final SuppressionGauges suppressionGauges;
 
     public PatientMonitoringService(HostInfo hostInfo, KafkaStreams streams) {
+        this(hostInfo, streams, null);
+    }
+
+    public PatientMonitoringService(HostInfo hostInfo, KafkaStreams streams, VitalTimestampExtractor timestampExtractor) {
+        this(hostInfo, streams, timestampExtractor, null);
+    }
+
+    public PatientMonitoringService(HostInfo hostInfo, KafkaStreams streams, VitalTimestampExtractor timestampExtractor,
+                                    SuppressionGauges suppressionGauges) {
+        this(hostInfo, streams, PulseCounting.SUPPRESSED, timestampExtractor, suppressionGauges);
+    }
+
+    public PatientMonitoringService(HostInfo hostInfo, KafkaStreams streams, PulseCounting pulseCounting,
+                                    VitalTimestampExtractor timestampExtractor, SuppressionGauges suppressionGauges) {
         this.hostInfo = hostInfo;
         this.streams = streams;
+        this.pulseCounting = pulseCounting;
+        this.timestampExtractor = timestampExtractor;
+        this.suppressionGauges = suppressionGauges;
     }
 
     @SuppressWarnings("all")
     void start() {
         Javalin app = Javalin.create().start(hostInfo.port());
 
-        /* Local window store query: all entries */
-        app.get("/bpm/all", this::getAll);
+        if (pulseCounting != PulseCounting.EARLY) {
+            /* Local window store query: all entries */
+            app.get("/bpm/all", this::getAll);
+
+            app.get("/bpm/range/{from}/{to}", this::getAllInRange);
 
-        app.get("/bpm/range/{from}/{to}", this::getAllInRange);
+            app.get("/bpm/range/{key}/{from}/{to}", this::getRange);
+        }
+
+        /* How the event time of the readings was extracted */
+        app.get("/timestamps/stats", this::getTimestampStats);
+
+        /* How many pulse counts wait for their window to close, in memory and on disk */
+        app.get("/suppression/stats", this::getSuppressionStats);
+    }
 
-        app.get("/bpm/range/{key}/{from}/{to}", this::getRange);
+    void getTimestampStats(Context ctx) {
+        if (timestampExtractor == null) {
+            ctx.status(404).result("the timestamp extractor isn't monitored");
+            return;
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        // timestamps in an unexpected format, parsed the slow way
+        stats.put("slow_parses", timestampExtractor.slowParses());
+        // readings without a valid timestamp, which were given the partition time
+        stats.put("partition_time_fallbacks", timestampExtractor.partitionTimeFallbacks());
+        ctx.json(stats);
+    }
+
+    void getSuppressionStats(Context ctx) {
+        if (suppressionGauges == null) {
+            ctx.status(404).result("the suppression buffers aren't monitored");
+            return;
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        // the keys and values of the windows buffered in memory
+        stats.put("buffer_bytes", suppressionGauges.bufferBytes());
+        // the windows that didn't fit in memory
+        stats.put("spilled_records", suppressionGauges.spilledRecords());
+        // how far past the end of a window the stream time was when it was emitted
+        stats.put("emit_lag_ms", suppressionGauges.emitLagMs());
+        ctx.json(stats);
     }
 
     void getAll(Context ctx) {
@@ -2,7 +2,13 @@ package com.gelerion.kafka.streams.patient.monitoring;
 
 import com.gelerion.kafka.streams.patient.monitoring.models.BodyTemp;
 import com.gelerion.kafka.streams.patient.monitoring.models.CombinedVitals;
+import com.gelerion.kafka.streams.patient.monitoring.models.HeartRate;
 import com.gelerion.kafka.streams.patient.monitoring.models.Pulse;
+import com.gelerion.kafka.streams.patient.monitoring.processors.CoalescingPulseCounter;
+import com.gelerion.kafka.streams.patient.monitoring.processors.LatestReadingJoiner;
+import com.gelerion.kafka.streams.patient.monitoring.processors.SlidingPulseCounter;
+import com.gelerion.kafka.streams.patient.monitoring.processors.SpillingSuppressor;
+import com.gelerion.kafka.streams.patient.monitoring.processors.SuppressionGauges;
 import com.gelerion.kafka.streams.patient.monitoring.serialization.json.JsonSerdes;
 import com.gelerion.kafka.streams.patient.monitoring.times.extractors.VitalTimestampExtractor;
 import org.apache.kafka.common.serialization.Serdes;
@@ -10,7 +16,7 @@ import org.apache.kafka.streams.KeyValue;
 import org.apache.kafka.streams.StreamsBuilder;
 import org.apache.kafka.streams.Topology;
 import org.apache.kafka.streams.kstream.*;
-import org.apache.kafka.streams.kstream.Suppressed.BufferConfig;
+import org.apache.kafka.streams.state.Stores;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -19,7 +25,63 @@ import java.time.Duration;
 public class PatientMonitoringTopology {
     private static final Logger log = LoggerFactory.getLogger(PatientMonitoringTopology.class);
 
+    // the record cache of the coalesced counting, the default of Kafka Streams. A (patient, window) count takes
+    // about 100 bytes of it, so the counts of all the open windows stay in the cache until the next commit
+    public static final long COALESCED_CACHE_MAX_BYTES = 10 * 1024 * 1024L;
+    // the bytes of pulse counts suppressed in memory, until their windows close, the others are kept on disk
+    static final long MAX_SUPPRESSED_MEMORY_BYTES = 1024 * 1024;
+    // the heart rate (beats per minute) that raises an alert, with a high body temperature
+    static final long HIGH_HEART_RATE = 100;
+
     public static Topology build() {
+        return build(new VitalTimestampExtractor());
+    }
+
+    /**
+     * @param timestampExtractor extracts the event time of the pulse and body temperature readings, pass the same
+     *                           instance to {@link PatientMonitoringService} to report its counters
+     */
+    public static Topology build(VitalTimestampExtractor timestampExtractor) {
+        return build(timestampExtractor, PulseCounting.SUPPRESSED);
+    }
+
+    /**
+     * @param timestampExtractor extracts the event time of the pulse and body temperature readings, pass the same
+     *                           instance to {@link PatientMonitoringService} to report its counters
+     * @param pulseCounting      how the heart rates are counted, all the ways give the same heart rates in the end
+     */
+    public static Topology build(VitalTimestampExtractor timestampExtractor, PulseCounting pulseCounting) {
+        return build(timestampExtractor, pulseCounting, new SuppressionGauges());
+    }
+
+    /**
+     * @param timestampExtractor extracts the event time of the pulse and body temperature readings, pass the same
+     *                           instance to {@link PatientMonitoringService} to report its counters
+     * @param pulseCounting      how the heart rates are counted, all the ways give the same heart rates in the end
+     * @param suppressionGauges  the state of the buffers the suppressed pulse counts wait in, pass the same instance
+     *                           to {@link PatientMonitoringService} to report it
+     */
+    public static Topology build(VitalTimestampExtractor timestampExtractor, PulseCounting pulseCounting,
+                                 SuppressionGauges suppressionGauges) {
+        return build(timestampExtractor, pulseCounting, VitalsJoin.WINDOWED, suppressionGauges);
+    }
+
+    /**
+     * @param timestampExtractor extracts the event time of the pulse and body temperature readings, pass the same
+     *                           instance to {@link PatientMonitoringService} to report its counters
+     * @param pulseCounting      how the heart rates are counted, all the ways give the same heart rates in the end
+     * @param vitalsJoin         how the high heart rates and body temperatures are joined into alerts, the early
+     *                           heart rates can only be joined with {@link VitalsJoin#LATEST}
+     * @param suppressionGauges  the state of the buffers the suppressed pulse counts wait in, pass the same instance
+     *                           to {@link PatientMonitoringService} to report it
+     */
+    public static Topology build(VitalTimestampExtractor timestampExtractor, PulseCounting pulseCounting,
+                                 VitalsJoin vitalsJoin, SuppressionGauges suppressionGauges) {
+        if (pulseCounting == PulseCounting.EARLY && vitalsJoin != VitalsJoin.LATEST) {
+            // the windowed join can't remove a retracted heart rate from its window store
+            throw new IllegalArgumentException(
+                    "early pulse counting requires the latest vitals join, got " + vitalsJoin);
+        }
         StreamsBuilder builder = new StreamsBuilder();
         // The following topology steps are numbered.
         // These numbers correlate with the topology design
@@ -27,7 +89,7 @@ public class PatientMonitoringTopology {
         // 1.1
         Consumed<String, Pulse> pulseConsumerOptions = Consumed.with(Serdes.String(), JsonSerdes.Pulse())
                 //use our custom extractor
-                .withTimestampExtractor(new VitalTimestampExtractor());
+                .withTimestampExtractor(timestampExtractor);
 
         KStream<String, Pulse> pulseEvents =
                 builder.stream("pulse-events", pulseConsumerOptions);
@@ -35,7 +97,7 @@ public class PatientMonitoringTopology {
         // 1.2
         Consumed<String, BodyTemp> bodyTempConsumerOptions =
                 Consumed.with(Serdes.String(), JsonSerdes.BodyTemp())
-                        .withTimestampExtractor(new VitalTimestampExtractor());
+                        .withTimestampExtractor(timestampExtractor);
 
         KStream<String, BodyTemp> tempEvents =
                 builder.stream("body-temp-events", bodyTempConsumerOptions);
@@ -52,19 +114,14 @@ public class PatientMonitoringTopology {
                         // of suppression since it means results won’t show up for 24 hour
                         .grace(Duration.ofSeconds(5));
 
-        KTable<Windowed<String>, Long> pulseCounts = pulseEvents
-                // 2
-                // Grouping records is a prerequisite for performing an aggregation
-                .groupByKey()
-                // 3.1 - windowed aggregation
-                // Window the stream using a 60-second tumbling window. This will allow us to turn the raw pulse
-                // events into a heart rate
-                .windowedBy(tumblingWindow)
-                // 3.2
-                // Materialize the heart rate for interactive queries
-                .count(Materialized.as("pulse-counts"))
-                // 4
-                .suppress(Suppressed.untilWindowCloses(BufferConfig.unbounded().shutDownWhenFull()));
+        KStream<Windowed<String>, Long> pulseCounts;
+        if (pulseCounting == PulseCounting.EARLY) {
+            pulseCounts = countEarly(builder, pulseEvents, tumblingWindow);
+        } else if (pulseCounting == PulseCounting.COALESCED) {
+            pulseCounts = countCoalesced(builder, pulseEvents, tumblingWindow);
+        } else {
+            pulseCounts = countSuppressed(builder, pulseEvents, tumblingWindow, suppressionGauges);
+        }
 
         //Output
         //[pulse-counts]: [1@1605171720000/1605171780000], 1
@@ -78,17 +135,8 @@ public class PatientMonitoringTopology {
         // (the beats per minute), but also the intermediate results of the window (the number of heartbeats in
         // this 60-second window so far)
 
-        // Suppression
-        /*
-        In order to use the suppress operator, we need to decide three things:
-         - Which suppression strategy should be used for suppressing intermediate window computations
-         - How much memory should be used for buffering the suppressed events (this is set using a Buffer Config)
-         - What to do when this memory limit is exceeded (this is controlled using a Buffer Full Strategy)
-         */
-
         pulseCounts
                 // for debugging purposes only
-                .toStream()
                 // One interesting thing to highlight in this code example is that the key of the KTable changed from
                 // String to Windowed<String>. This is because the windowedBy operator converts KTables into windowed
                 // KTables, which have multidimensional keys that contain not only the original record key, but also
@@ -98,9 +146,7 @@ public class PatientMonitoringTopology {
 
         // 5.1
         // filter for any pulse that exceeds our threshold
-        KStream<String, Long> highPulse = pulseCounts
-                // Convert to a stream, so we can use map operator to rekey the records
-                .toStream()
+        KStream<Windowed<String>, Long> highPulseCounts = pulseCounts
                 // for debug purposes
                 .peek((key, value) -> {
                             String id = key.key();
@@ -109,10 +155,13 @@ public class PatientMonitoringTopology {
                             log.info("Patient {} had a heart rate of {} between {} and {}", id, value, start, end);
                         })
                 // Filter for only heart rates that exceed our predefined threshold of 100 bpm
-                .filter((key, value) -> value >= 100)
-                //  6
-                // Rekey the stream using the original key
-                .map((windowedKey, value) -> KeyValue.pair(windowedKey.key(), value));
+                // (the early counting forwards lower ones only to retract an early heart rate of their window)
+                .filter((key, value) -> pulseCounting == PulseCounting.EARLY || value >= HIGH_HEART_RATE);
+
+        //  6
+        // Rekey the stream using the original key
+        KStream<String, Long> highPulse =
+                highPulseCounts.map((windowedKey, value) -> KeyValue.pair(windowedKey.key(), value));
 
         // 5.2
         // filter for any temperature reading that exceeds our threshold
@@ -121,10 +170,6 @@ public class PatientMonitoringTopology {
                 tempEvents.filter((key, value) ->
                         value != null && value.getTemperature() != null && value.getTemperature() > 100.4);
 
-        // Windowed joins
-        StreamJoined<String, Long, BodyTemp> joinParams =
-                StreamJoined.with(Serdes.String(), Serdes.Long(), JsonSerdes.BodyTemp());
-
         JoinWindows joinWindows = JoinWindows
                 // Records with timestamps one minute apart or less will fall into the same window, and will therefore be joined.
                 .of(Duration.ofSeconds(60))
@@ -135,8 +180,9 @@ public class PatientMonitoringTopology {
                 (pulseRate, bodyTemp) -> new CombinedVitals(pulseRate.intValue(), bodyTemp);
 
         // 7
-        KStream<String, CombinedVitals> vitalsJoined =
-                highPulse.join(highTemp, valueJoiner, joinWindows, joinParams);
+        KStream<String, CombinedVitals> vitalsJoined = vitalsJoin == VitalsJoin.LATEST
+                ? joinLatest(builder, highPulseCounts, highTemp, joinWindows)
+                : joinWindowed(highPulse, highTemp, valueJoiner, joinWindows);
 
         // 8
         // In order to make our join results available to downstream consumers, we need to write the enriched data back to Kafka.
@@ -157,4 +203,130 @@ public class PatientMonitoringTopology {
         return builder.build();
     }
 
+    private static KStream<String, CombinedVitals> joinWindowed(KStream<String, Long> highPulse,
+                                                                KStream<String, BodyTemp> highTemp,
+                                                                ValueJoiner<Long, BodyTemp, CombinedVitals> valueJoiner,
+                                                                JoinWindows joinWindows) {
+        // Windowed joins
+        StreamJoined<String, Long, BodyTemp> joinParams =
+                StreamJoined.with(Serdes.String(), Serdes.Long(), JsonSerdes.BodyTemp());
+
+        return highPulse.join(highTemp, valueJoiner, joinWindows, joinParams);
+    }
+
+    // The windowed join keeps every high reading of the last two minutes, of both sides, and joins each new reading
+    // with all of them. Here each side keeps the latest reading per patient only, and joins it with the latest of the
+    // other side (see LatestReadingJoiner). The heart rates keep their window, which the alerts carry: the retraction
+    // of an early heart rate (its final heart rate, below the threshold) removes it, and is forwarded to the alerts,
+    // where it retracts the alerts of its window only
+    private static KStream<String, CombinedVitals> joinLatest(StreamsBuilder builder,
+                                                              KStream<Windowed<String>, Long> highPulseCounts,
+                                                              KStream<String, BodyTemp> highTemp,
+                                                              JoinWindows joinWindows) {
+        builder.addStateStore(Stores.timestampedKeyValueStoreBuilder(
+                Stores.persistentTimestampedKeyValueStore("latest-high-pulse"),
+                Serdes.String(), JsonSerdes.HeartRate()));
+        builder.addStateStore(Stores.timestampedKeyValueStoreBuilder(
+                Stores.persistentTimestampedKeyValueStore("latest-high-temp"), Serdes.String(), JsonSerdes.BodyTemp()));
+
+        // The heart rates are rekeyed by the patient ID of the pulse events they were counted from, so they are on
+        // the partition they came from already: unlike the DSL join, there is no repartition topic to go through.
+        // The pulse and body temperature topics must have the same number of partitions (scripts/create-topics.sh)
+        KStream<String, HeartRate> highPulse = highPulseCounts.map((windowedKey, value) -> KeyValue.pair(
+                windowedKey.key(), new HeartRate(value, windowedKey.window().start(), windowedKey.window().end())));
+        KStream<String, CombinedVitals> pulseJoined = highPulse.transform(
+                () -> new LatestReadingJoiner<HeartRate, BodyTemp, CombinedVitals>(
+                        "latest-high-pulse", "latest-high-temp", joinWindows, CombinedVitals::new,
+                        heartRate -> heartRate.getBpm() < HIGH_HEART_RATE, CombinedVitals::retraction),
+                "latest-high-pulse", "latest-high-temp");
+        KStream<String, CombinedVitals> tempJoined = highTemp.transform(
+                () -> new LatestReadingJoiner<BodyTemp, HeartRate, CombinedVitals>(
+                        "latest-high-temp", "latest-high-pulse", joinWindows,
+                        (bodyTemp, heartRate) -> new CombinedVitals(heartRate, bodyTemp)),
+                "latest-high-temp", "latest-high-pulse");
+
+        return pulseJoined.merge(tempJoined);
+    }
+
+    private static KStream<Windowed<String>, Long> countSuppressed(StreamsBuilder builder,
+                                                                   KStream<String, Pulse> pulseEvents,
+                                                                   TimeWindows tumblingWindow,
+                                                                   SuppressionGauges suppressionGauges) {
+        KTable<Windowed<String>, Long> pulseCounts = pulseEvents
+                // 2
+                // Grouping records is a prerequisite for performing an aggregation
+                .groupByKey()
+                // 3.1 - windowed aggregation
+                // Window the stream using a 60-second tumbling window. This will allow us to turn the raw pulse
+                // events into a heart rate
+                .windowedBy(tumblingWindow)
+                // 3.2
+                // Materialize the heart rate for interactive queries
+                .count(Materialized.as("pulse-counts"));
+
+        // 4
+        // Suppression
+        /*
+        In order to use the suppress operator, we need to decide three things:
+         - Which suppression strategy should be used for suppressing intermediate window computations
+         - How much memory should be used for buffering the suppressed events (this is set using a Buffer Config)
+         - What to do when this memory limit is exceeded (this is controlled using a Buffer Full Strategy)
+         */
+        // suppress(untilWindowCloses(BufferConfig.unbounded().shutDownWhenFull())) keeps every open window in memory,
+        // the application dies when a burst of windows doesn't fit in the heap. SpillingSuppressor forwards the same
+        // final results, and keeps the windows that don't fit in its memory bound on disk
+        builder.addStateStore(SpillingSuppressor.memoryStoreBuilder("pulse-counts-suppress-buffer"));
+        builder.addStateStore(SpillingSuppressor.diskStoreBuilder("pulse-counts-suppress-spill"));
+
+        return pulseCounts
+                // Convert to a stream, so we can use map operator to rekey the records
+                .toStream()
+                .transform(
+                        () -> new SpillingSuppressor<>(
+                                "pulse-counts-suppress-buffer", "pulse-counts-suppress-spill",
+                                tumblingWindow, MAX_SUPPRESSED_MEMORY_BYTES, Serdes.Long(), suppressionGauges),
+                        "pulse-counts-suppress-buffer", "pulse-counts-suppress-spill");
+    }
+
+    // The count above writes every pulse to the window store, and to its changelog, since the record cache is
+    // disabled. Here the store has a record cache (see COALESCED_CACHE_MAX_BYTES), so the counts are written once per
+    // (patient, window) and commit. The closed windows are forwarded by the same processor, in place of suppress
+    // (see CoalescingPulseCounter)
+    private static KStream<Windowed<String>, Long> countCoalesced(StreamsBuilder builder,
+                                                                  KStream<String, Pulse> pulseEvents,
+                                                                  TimeWindows tumblingWindow) {
+        // the same store (and changelog) as the count's, so that the interactive queries don't change
+        builder.addStateStore(Stores.timestampedWindowStoreBuilder(
+                Stores.persistentTimestampedWindowStore(
+                        "pulse-counts",
+                        // the retention of the count's store
+                        Duration.ofDays(1),
+                        Duration.ofMillis(tumblingWindow.size()),
+                        false),
+                Serdes.String(), Serdes.Long())
+                // flushed before the offsets are committed, so a crash loses nothing that isn't consumed again
+                .withCachingEnabled());
+        builder.addStateStore(Stores.keyValueStoreBuilder(
+                Stores.persistentKeyValueStore("pulse-counts-closed"), Serdes.String(), Serdes.Long()));
+
+        // the pulse events are keyed by patient already, like for groupByKey there is no repartition
+        return pulseEvents.transform(
+                () -> new CoalescingPulseCounter("pulse-counts", "pulse-counts-closed", tumblingWindow),
+                "pulse-counts", "pulse-counts-closed");
+    }
+
+    // The heart rates above are only known once their window closes, more than a minute after the pulses that
+    // raised them. Here the pulses of the last minute are counted for every pulse, and a high count is forwarded
+    // right away, then refined or retracted when its window closes (see SlidingPulseCounter)
+    private static KStream<Windowed<String>, Long> countEarly(StreamsBuilder builder,
+                                                              KStream<String, Pulse> pulseEvents,
+                                                              TimeWindows tumblingWindow) {
+        builder.addStateStore(SlidingPulseCounter.storeBuilder("sliding-pulse-counts"));
+
+        // the pulse events are keyed by patient already, like for groupByKey there is no repartition
+        return pulseEvents.transform(
+                () -> new SlidingPulseCounter("sliding-pulse-counts", tumblingWindow, HIGH_HEART_RATE),
+                "sliding-pulse-counts");
+    }
+
 }
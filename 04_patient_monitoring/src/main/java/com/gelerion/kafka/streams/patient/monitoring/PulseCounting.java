@@ -0,0 +1,30 @@
+package com.gelerion.kafka.streams.patient.monitoring;
+
+import java.util.Locale;
+
+/**
+ * How the pulse events are turned into heart rates (the final pulse count of each 60-second window), see the readme.
+ */
+public enum PulseCounting {
+    /** A windowed count, suppressed until the windows close */
+    SUPPRESSED,
+    /** The same heart rates, with the counts cached in memory between commits (see CoalescingPulseCounter) */
+    COALESCED,
+    /**
+     * The same heart rates, with the high ones forwarded as soon as the pulses of the last minute reach them, then
+     * refined or retracted when their window closes (see SlidingPulseCounter)
+     */
+    EARLY;
+
+    /**
+     * @param name suppressed, coalesced or early, in any case
+     */
+    public static PulseCounting fromName(String name) {
+        try {
+            return valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(
+                    "unknown pulse counting " + name + ", expected suppressed, coalesced or early");
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.gelerion.kafka.streams.patient.monitoring;
+
+import java.util.Locale;
+
+/**
+ * How the high heart rates are joined with the high body temperatures into alerts, see the readme.
+ */
+public enum VitalsJoin {
+    /** A windowed join of the DSL, which keeps every reading of the join window */
+    WINDOWED,
+    /** A join of the latest reading of each side per patient (see LatestReadingJoiner) */
+    LATEST;
+
+    /**
+     * @param name windowed or latest, in any case
+     */
+    public static VitalsJoin fromName(String name) {
+        try {
+            return valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("unknown vitals join " + name + ", expected windowed or latest");
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.gelerion.kafka.streams.patient.monitoring.models;
 
 public class BodyTemp implements Vital {
     private String timestamp;
+    private Long epochMillis;
     private Double temperature;
     private String unit;
 
@@ -10,6 +11,11 @@ public class BodyTemp implements Vital {
         return this.timestamp;
     }
 
+    @Override
+    public Long getEpochMillis() {
+        return this.epochMillis;
+    }
+
     public Double getTemperature() {
         return this.temperature;
     }
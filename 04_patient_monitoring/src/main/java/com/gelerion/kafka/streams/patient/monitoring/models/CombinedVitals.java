@@ -3,10 +3,36 @@ package com.gelerion.kafka.streams.patient.monitoring.models;
 public class CombinedVitals {
     private final int heartRate;
     private final BodyTemp bodyTemp;
+    // the window of the heart rate, null if it isn't known (the windowed join)
+    private final Long heartRateWindowStart;
+    private final Long heartRateWindowEnd;
+    // true if the alerts of the heart rate's window are retracted, null otherwise, so it isn't serialized
+    private final Boolean retracted;
 
     public CombinedVitals(int heartRate, BodyTemp bodyTemp) {
+        this(heartRate, bodyTemp, null, null, null);
+    }
+
+    public CombinedVitals(HeartRate heartRate, BodyTemp bodyTemp) {
+        this((int) heartRate.getBpm(), bodyTemp, heartRate.getWindowStart(), heartRate.getWindowEnd(), null);
+    }
+
+    private CombinedVitals(int heartRate, BodyTemp bodyTemp, Long heartRateWindowStart, Long heartRateWindowEnd,
+                           Boolean retracted) {
         this.heartRate = heartRate;
         this.bodyTemp = bodyTemp;
+        this.heartRateWindowStart = heartRateWindowStart;
+        this.heartRateWindowEnd = heartRateWindowEnd;
+        this.retracted = retracted;
+    }
+
+    /**
+     * Retracts the alerts of the patient whose heart rate was counted in the same window: the final heart rate of the
+     * window (below the threshold), without a body temperature.
+     */
+    public static CombinedVitals retraction(HeartRate heartRate) {
+        return new CombinedVitals(
+                (int) heartRate.getBpm(), null, heartRate.getWindowStart(), heartRate.getWindowEnd(), true);
     }
 
     public int getHeartRate() {
@@ -17,8 +43,26 @@ public class CombinedVitals {
         return this.bodyTemp;
     }
 
+    public Long getHeartRateWindowStart() {
+        return this.heartRateWindowStart;
+    }
+
+    public Long getHeartRateWindowEnd() {
+        return this.heartRateWindowEnd;
+    }
+
+    public boolean isRetracted() {
+        return Boolean.TRUE.equals(this.retracted);
+    }
+
     @Override
     public String toString() {
-        return "{" + " heartRate='" + getHeartRate() + "'" + ", bodyTemp='" + getBodyTemp() + "'" + "}";
+        return "{"
+                + " heartRate='" + getHeartRate() + "'"
+                + ", bodyTemp='" + getBodyTemp() + "'"
+                + ", heartRateWindowStart='" + getHeartRateWindowStart() + "'"
+                + ", heartRateWindowEnd='" + getHeartRateWindowEnd() + "'"
+                + ", retracted='" + isRetracted() + "'"
+                + "}";
     }
 }
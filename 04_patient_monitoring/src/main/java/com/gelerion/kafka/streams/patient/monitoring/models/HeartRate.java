@@ -0,0 +1,43 @@
+package com.gelerion.kafka.streams.patient.monitoring.models;
+
+/**
+ * The heart rate of a patient (the pulse count of a 60-second window), with the window it was counted in.
+ */
+public class HeartRate {
+    private final long bpm;
+    private final long windowStart;
+    private final long windowEnd;
+
+    public HeartRate(long bpm, long windowStart, long windowEnd) {
+        this.bpm = bpm;
+        this.windowStart = windowStart;
+        this.windowEnd = windowEnd;
+    }
+
+    public long getBpm() {
+        return this.bpm;
+    }
+
+    public long getWindowStart() {
+        return this.windowStart;
+    }
+
+    public long getWindowEnd() {
+        return this.windowEnd;
+    }
+
+    @Override
+    public String toString() {
+        return "{"
+                + " bpm='"
+                + getBpm()
+                + "'"
+                + ", windowStart='"
+                + getWindowStart()
+                + "'"
+                + ", windowEnd='"
+                + getWindowEnd()
+                + "'"
+                + "}";
+    }
+}
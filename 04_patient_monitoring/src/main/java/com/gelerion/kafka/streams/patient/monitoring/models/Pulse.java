@@ -2,9 +2,15 @@ package com.gelerion.kafka.streams.patient.monitoring.models;
 
 public class Pulse implements Vital {
     private String timestamp;
+    private Long epochMillis;
 
     @Override
     public String getTimestamp() {
         return this.timestamp;
     }
+
+    @Override
+    public Long getEpochMillis() {
+        return this.epochMillis;
+    }
 }
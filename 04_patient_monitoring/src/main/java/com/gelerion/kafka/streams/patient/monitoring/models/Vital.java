@@ -2,4 +2,7 @@ package com.gelerion.kafka.streams.patient.monitoring.models;
 
 public interface Vital {
     String getTimestamp();
+
+    /** The time of the measurement in epoch millis, sent by some monitors instead of (or next to) the timestamp */
+    Long getEpochMillis();
 }
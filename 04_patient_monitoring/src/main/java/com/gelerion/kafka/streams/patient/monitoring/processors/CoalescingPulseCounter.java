@@ -0,0 +1,129 @@
+package com.gelerion.kafka.streams.patient.monitoring.processors;
+
+import com.gelerion.kafka.streams.patient.monitoring.models.Pulse;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.kstream.TimeWindows;
+import org.apache.kafka.streams.kstream.Transformer;
+import org.apache.kafka.streams.kstream.Windowed;
+import org.apache.kafka.streams.processor.ProcessorContext;
+import org.apache.kafka.streams.processor.To;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.TimestampedWindowStore;
+import org.apache.kafka.streams.state.ValueAndTimestamp;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Counts the pulses of every patient in tumbling windows, and forwards the final count of each window once it closes,
+ * like {@code windowedBy(windows).count()} followed by {@code suppress(untilWindowCloses(...))}, but without a store
+ * write and a changelog record per pulse.
+ *
+ * The pulses are counted in a window store with a record cache, which keeps the latest count of each (patient,
+ * window) and writes it to the store, and its changelog, when Kafka Streams commits (or when the cache is full). The
+ * window store keeps the counts for interactive queries. Since the counts of the closed windows are read back from
+ * the window store (through the cache), nothing is suppressed until the windows close, and the only other state is
+ * the end of the last window forwarded, which is written once per window.
+ *
+ * The results match the DSL's: late pulses (whose window closed, given the grace period) are dropped, a window is
+ * forwarded with the timestamp of its latest pulse once the stream time passes its end plus the grace period, and
+ * the windows that close at the same time are forwarded by patient id.
+ */
+public class CoalescingPulseCounter implements Transformer<String, Pulse, KeyValue<Windowed<String>, Long>> {
+    private static final String LAST_CLOSED_WINDOW_END = "last-closed-window-end";
+
+    private final String countStoreName;
+    private final String closedStoreName;
+    private final long windowSize;
+    private final long grace;
+
+    private ProcessorContext context;
+    private TimestampedWindowStore<String, Long> counts;
+    private KeyValueStore<String, Long> closed;
+    private long observedStreamTime = -1L;
+    // the windows that end at or before it have been forwarded
+    private long lastClosedWindowEnd;
+
+    /**
+     * @param countStoreName  a timestamped window store of the counts, with the size of {@code windows}, and caching
+     *                        enabled: without a cache (or with {@code cache.max.bytes.buffering=0}) every pulse is
+     *                        still written to the store and its changelog
+     * @param closedStoreName a key-value store of the end of the last window forwarded
+     * @param windows         tumbling windows
+     */
+    public CoalescingPulseCounter(String countStoreName, String closedStoreName, TimeWindows windows) {
+        if (windows.advanceMs != windows.size()) {
+            throw new IllegalArgumentException("only tumbling windows are supported, got " + windows);
+        }
+        this.countStoreName = countStoreName;
+        this.closedStoreName = closedStoreName;
+        this.windowSize = windows.size();
+        this.grace = windows.gracePeriodMs();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void init(ProcessorContext context) {
+        this.context = context;
+        this.counts = (TimestampedWindowStore<String, Long>) context.getStateStore(countStoreName);
+        this.closed = (KeyValueStore<String, Long>) context.getStateStore(closedStoreName);
+        Long lastClosed = closed.get(LAST_CLOSED_WINDOW_END);
+        // no window was forwarded yet, all the windows of the store are open
+        this.lastClosedWindowEnd = lastClosed == null ? Long.MIN_VALUE : lastClosed;
+    }
+
+    @Override
+    public KeyValue<Windowed<String>, Long> transform(String patientId, Pulse pulse) {
+        if (patientId == null) {
+            // can't be grouped, the DSL skips them as well
+            return null;
+        }
+        long timestamp = context.timestamp();
+        observedStreamTime = Math.max(observedStreamTime, timestamp);
+        long closeTime = observedStreamTime - grace;
+
+        long windowStart = timestamp - Math.floorMod(timestamp, windowSize);
+        if (windowStart + windowSize > closeTime) {
+            // like the count of the DSL, the timestamp of a window is the one of its latest pulse
+            ValueAndTimestamp<Long> stored = counts.fetch(patientId, windowStart);
+            counts.put(patientId, stored == null
+                    ? ValueAndTimestamp.make(1L, timestamp)
+                    : ValueAndTimestamp.make(stored.value() + 1, Math.max(timestamp, stored.timestamp())), windowStart);
+        }
+        // else the window is closed, the pulse is too late
+
+        forwardClosedWindows(closeTime);
+        return null;
+    }
+
+    // forwards the windows that end at or before the close time, once
+    private void forwardClosedWindows(long closeTime) {
+        long windowEnd = closeTime - Math.floorMod(closeTime, windowSize);
+        if (windowEnd <= lastClosedWindowEnd) {
+            return;
+        }
+        long fromStart = lastClosedWindowEnd == Long.MIN_VALUE ? 0 : lastClosedWindowEnd - windowSize + 1;
+        long toStart = windowEnd - windowSize;
+        List<KeyValue<Windowed<String>, ValueAndTimestamp<Long>>> closedWindows = new ArrayList<>();
+        try (KeyValueIterator<Windowed<String>, ValueAndTimestamp<Long>> range = counts.fetchAll(fromStart, toStart)) {
+            range.forEachRemaining(closedWindows::add);
+        }
+        closedWindows.sort(Comparator
+                .comparingLong((KeyValue<Windowed<String>, ValueAndTimestamp<Long>> window) -> window.key.window().end())
+                .thenComparing(window -> window.key.key()));
+
+        for (KeyValue<Windowed<String>, ValueAndTimestamp<Long>> window : closedWindows) {
+            context.forward(window.key, window.value.value(), To.all().withTimestamp(window.value.timestamp()));
+        }
+
+        lastClosedWindowEnd = windowEnd;
+        closed.put(LAST_CLOSED_WINDOW_END, windowEnd);
+    }
+
+    @Override
+    public void close() {
+        // the stores (and the cache) are flushed and closed by Kafka Streams
+    }
+}
@@ -0,0 +1,117 @@
+package com.gelerion.kafka.streams.patient.monitoring.processors;
+
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.kstream.JoinWindows;
+import org.apache.kafka.streams.kstream.Transformer;
+import org.apache.kafka.streams.kstream.ValueJoiner;
+import org.apache.kafka.streams.kstream.ValueMapper;
+import org.apache.kafka.streams.processor.ProcessorContext;
+import org.apache.kafka.streams.processor.To;
+import org.apache.kafka.streams.state.TimestampedKeyValueStore;
+import org.apache.kafka.streams.state.ValueAndTimestamp;
+
+import java.util.function.Predicate;
+
+/**
+ * One side of an inner join of two streams that only keeps the latest reading of each side per key: a reading is
+ * joined with the latest reading of the other side, if their timestamps are at most the window size apart.
+ *
+ * Each side of the join is a transformer of its own stream, with the store of its latest readings first and the
+ * store of the other side's second. Both stores hold a single entry per key, where the join of the DSL keeps every
+ * reading of the window in both of its window stores, and joins a reading with all of them. Here a reading is
+ * joined once, with the latest reading of the other side (which, for readings in order, is also the closest one).
+ * The result has the timestamp of the latest of the two readings, like in the DSL.
+ *
+ * A reading older than the stored one of its side is joined, but not stored. A side may have retractions, readings
+ * that cancel an earlier one: a retraction removes the stored reading of its side, unless it is newer, and is
+ * forwarded as a result of its own, so that downstream can tell which results it retracts. The two streams must be
+ * partitioned the same way (the same keys, and as many partitions), which the DSL checks for its joins, but can't
+ * for this one.
+ */
+public class LatestReadingJoiner<V, VO, VR> implements Transformer<String, V, KeyValue<String, VR>> {
+    private final String thisStoreName;
+    private final String otherStoreName;
+    private final long windowSize;
+    private final ValueJoiner<V, VO, VR> joiner;
+    private final Predicate<V> retracts;
+    private final ValueMapper<V, VR> retraction;
+
+    private ProcessorContext context;
+    private TimestampedKeyValueStore<String, V> thisStore;
+    private TimestampedKeyValueStore<String, VO> otherStore;
+
+    /**
+     * @param thisStoreName  a timestamped key-value store of the latest readings of this side
+     * @param otherStoreName a timestamped key-value store of the latest readings of the other side
+     * @param windows        how far apart the readings joined may be, before or after (the size of the windows)
+     */
+    public LatestReadingJoiner(String thisStoreName, String otherStoreName, JoinWindows windows,
+                               ValueJoiner<V, VO, VR> joiner) {
+        this(thisStoreName, otherStoreName, windows, joiner, value -> false, null);
+    }
+
+    /**
+     * @param thisStoreName  a timestamped key-value store of the latest readings of this side
+     * @param otherStoreName a timestamped key-value store of the latest readings of the other side
+     * @param windows        how far apart the readings joined may be, before or after (the size of the windows)
+     * @param retracts       whether a reading of this side is a retraction
+     * @param retraction     the result forwarded for a retraction
+     */
+    public LatestReadingJoiner(String thisStoreName, String otherStoreName, JoinWindows windows,
+                               ValueJoiner<V, VO, VR> joiner, Predicate<V> retracts, ValueMapper<V, VR> retraction) {
+        if (windows.beforeMs != windows.afterMs) {
+            throw new IllegalArgumentException("only symmetric join windows are supported, got " + windows);
+        }
+        this.thisStoreName = thisStoreName;
+        this.otherStoreName = otherStoreName;
+        this.windowSize = windows.beforeMs;
+        this.joiner = joiner;
+        this.retracts = retracts;
+        this.retraction = retraction;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void init(ProcessorContext context) {
+        this.context = context;
+        this.thisStore = (TimestampedKeyValueStore<String, V>) context.getStateStore(thisStoreName);
+        this.otherStore = (TimestampedKeyValueStore<String, VO>) context.getStateStore(otherStoreName);
+    }
+
+    @Override
+    public KeyValue<String, VR> transform(String key, V value) {
+        if (key == null) {
+            // can't be joined, the DSL skips them as well
+            return null;
+        }
+        long timestamp = context.timestamp();
+        if (value == null) {
+            // can't be joined, the DSL skips them as well
+            return null;
+        }
+        if (retracts.test(value)) {
+            ValueAndTimestamp<V> latest = thisStore.get(key);
+            if (latest != null && latest.timestamp() <= timestamp) {
+                thisStore.delete(key);
+            }
+            context.forward(key, retraction.apply(value));
+            return null;
+        }
+        ValueAndTimestamp<V> latest = thisStore.get(key);
+        if (latest == null || latest.timestamp() <= timestamp) {
+            thisStore.put(key, ValueAndTimestamp.make(value, timestamp));
+        }
+
+        ValueAndTimestamp<VO> other = otherStore.get(key);
+        if (other != null && Math.abs(other.timestamp() - timestamp) <= windowSize) {
+            context.forward(key, joiner.apply(value, other.value()),
+                    To.all().withTimestamp(Math.max(timestamp, other.timestamp())));
+        }
+        return null;
+    }
+
+    @Override
+    public void close() {
+        // the stores are closed by Kafka Streams
+    }
+}
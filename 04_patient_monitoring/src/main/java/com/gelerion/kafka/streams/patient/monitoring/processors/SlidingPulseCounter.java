@@ -0,0 +1,376 @@
+package com.gelerion.kafka.streams.patient.monitoring.processors;
+
+import com.gelerion.kafka.streams.patient.monitoring.models.Pulse;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.common.utils.Bytes;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.kstream.TimeWindows;
+import org.apache.kafka.streams.kstream.Transformer;
+import org.apache.kafka.streams.kstream.Windowed;
+import org.apache.kafka.streams.kstream.internals.TimeWindow;
+import org.apache.kafka.streams.processor.ProcessorContext;
+import org.apache.kafka.streams.processor.To;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.StoreBuilder;
+import org.apache.kafka.streams.state.Stores;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * Counts the pulses of every patient in tumbling windows, like {@code windowedBy(windows).count()} followed by
+ * {@code suppress(untilWindowCloses(...))}, but forwards a count as soon as it gets high, without waiting for the
+ * window to close.
+ *
+ * For every pulse, the pulses of the patient over the last window size (a sliding window ending at the latest pulse)
+ * are counted. When the count crosses the threshold, it is forwarded right away for the tumbling window of the latest
+ * pulse. When that window closes, its final count is forwarded if it differs: refined, or retracted if it is below the
+ * threshold. The windows that didn't fire early, e.g. while the count stays high, are forwarded when they close, if
+ * their count reaches the threshold. The last count forwarded for each window is the one suppress forwards, for the
+ * windows whose count reaches the threshold; the lower counts forwarded are retractions only.
+ *
+ * The pulses of each patient that are in an open window, or in the last window size, are kept in memory, sorted, so
+ * that both counts are a binary search, without scanning any stored window. The key-value store has an entry per
+ * (patient, pulse timestamp), put when a pulse comes and deleted when it isn't counted anymore, and an entry per
+ * patient for the windows that fired, written when they change: a pulse writes a few bytes to the store and its
+ * changelog, not all the pulses of the patient. The pulses are read back from the store in init. Once all the windows
+ * of a patient closed, and its pulses can't be in the sliding window of a new pulse anymore (two window sizes after
+ * its latest pulse), the patient is removed from memory and from the store, and starts over if it comes back.
+ *
+ * Late pulses (whose window closed, given the grace period) are dropped, and the windows that close at the same time
+ * are forwarded by patient id, like in the DSL. Forwarded counts have the timestamp of the latest pulse of the
+ * window, or of the sliding window.
+ */
+public class SlidingPulseCounter implements Transformer<String, Pulse, KeyValue<Windowed<String>, Long>> {
+    private static final Comparator<Windowed<String>> BY_END_THEN_KEY = Comparator
+            .comparingLong((Windowed<String> window) -> window.window().end())
+            .thenComparing(Windowed::key);
+    // the first byte of the store keys: the state of a patient, or a pulse timestamp of a patient
+    private static final byte STATE = 's';
+    private static final byte PULSE = 'p';
+
+    private final String storeName;
+    private final long windowSize;
+    private final long grace;
+    private final long threshold;
+
+    private ProcessorContext context;
+    private KeyValueStore<Bytes, byte[]> store;
+    private long observedStreamTime = -1L;
+    // the content of the store, by patient
+    private final Map<String, PatientPulses> patients = new HashMap<>();
+    // the windows with pulses, until they close
+    private final NavigableSet<Windowed<String>> openWindows = new TreeSet<>(BY_END_THEN_KEY);
+    // the patients whose windows all closed, from their latest pulse to when they are removed
+    private final NavigableSet<Windowed<String>> idlePatients = new TreeSet<>(BY_END_THEN_KEY);
+
+    /**
+     * @param storeName a store built with {@link #storeBuilder(String)}
+     * @param windows   tumbling windows, whose size is also the size of the sliding windows
+     * @param threshold the count forwarded as soon as a sliding window reaches it
+     */
+    public SlidingPulseCounter(String storeName, TimeWindows windows, long threshold) {
+        if (windows.advanceMs != windows.size()) {
+            throw new IllegalArgumentException("only tumbling windows are supported, got " + windows);
+        }
+        if (threshold <= 0) {
+            throw new IllegalArgumentException("threshold must be positive, got " + threshold);
+        }
+        this.storeName = storeName;
+        this.windowSize = windows.size();
+        this.grace = windows.gracePeriodMs();
+        this.threshold = threshold;
+    }
+
+    public static StoreBuilder<KeyValueStore<Bytes, byte[]>> storeBuilder(String name) {
+        return Stores.keyValueStoreBuilder(Stores.persistentKeyValueStore(name), Serdes.Bytes(), Serdes.ByteArray());
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void init(ProcessorContext context) {
+        this.context = context;
+        this.store = (KeyValueStore<Bytes, byte[]>) context.getStateStore(storeName);
+        // the store is restored already
+        try (KeyValueIterator<Bytes, byte[]> entries = store.all()) {
+            while (entries.hasNext()) {
+                KeyValue<Bytes, byte[]> entry = entries.next();
+                ByteBuffer key = ByteBuffer.wrap(entry.key.get());
+                if (key.get() == STATE) {
+                    patients.computeIfAbsent(patientId(key), id -> new PatientPulses()).readState(entry.value);
+                } else {
+                    long timestamp = key.getLong();
+                    PatientPulses pulses = patients.computeIfAbsent(patientId(key), id -> new PatientPulses());
+                    for (int i = ByteBuffer.wrap(entry.value).getInt(); i > 0; i--) {
+                        pulses.add(timestamp);
+                    }
+                }
+            }
+        }
+        Iterator<Map.Entry<String, PatientPulses>> iterator = patients.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, PatientPulses> patient = iterator.next();
+            PatientPulses pulses = patient.getValue();
+            if (pulses.size == 0) {
+                // a state without pulses, nothing to count
+                store.delete(stateKey(patient.getKey()));
+                iterator.remove();
+                continue;
+            }
+            for (int i = 0; i < pulses.size; i++) {
+                long windowStart = windowStart(pulses.timestamps[i]);
+                if (windowStart + windowSize > pulses.lastClosedWindowEnd) {
+                    openWindows.add(window(patient.getKey(), windowStart));
+                }
+            }
+            if (windowStart(pulses.latest()) + windowSize <= pulses.lastClosedWindowEnd) {
+                idlePatients.add(idle(patient.getKey(), pulses.latest()));
+            }
+        }
+    }
+
+    @Override
+    public KeyValue<Windowed<String>, Long> transform(String patientId, Pulse pulse) {
+        if (patientId == null) {
+            // can't be grouped, the DSL skips them as well
+            return null;
+        }
+        long timestamp = context.timestamp();
+        observedStreamTime = Math.max(observedStreamTime, timestamp);
+        long closeTime = observedStreamTime - grace;
+        // the pulse that moved the stream time isn't counted in the windows it closed
+        closeWindows(closeTime);
+
+        long windowStart = windowStart(timestamp);
+        if (windowStart + windowSize <= closeTime) {
+            // the window is closed, the pulse is too late
+            return null;
+        }
+        PatientPulses pulses = patients.computeIfAbsent(patientId, id -> new PatientPulses());
+        pulses.add(timestamp);
+        store.put(pulseKey(patientId, timestamp), ByteBuffer.allocate(Integer.BYTES)
+                .putInt((int) pulses.count(timestamp, timestamp))
+                .array());
+        openWindows.add(window(patientId, windowStart));
+
+        long latest = pulses.latest();
+        // the pulses that are neither in an open window, nor in the sliding window
+        removeUpTo(patientId, pulses, Math.min(closeTime, latest - 1) - windowSize);
+
+        long count = pulses.count(latest - windowSize + 1, latest);
+        boolean high = count >= threshold;
+        long latestWindowStart = windowStart(latest);
+        if (high && !pulses.high && pulses.earlyCount(latestWindowStart) < 0) {
+            pulses.fire(latestWindowStart, count);
+            context.forward(window(patientId, latestWindowStart), count, To.all().withTimestamp(latest));
+        }
+        if (high != pulses.high) {
+            pulses.high = high;
+            store.put(stateKey(patientId), pulses.stateBytes());
+        }
+        return null;
+    }
+
+    // forwards the final count of the windows that end at or before the close time, when it matters
+    private void closeWindows(long closeTime) {
+        while (!openWindows.isEmpty() && openWindows.first().window().end() <= closeTime) {
+            Windowed<String> window = openWindows.pollFirst();
+            long start = window.window().start();
+            long end = window.window().end();
+            PatientPulses pulses = patients.get(window.key());
+            long count = pulses.count(start, end - 1);
+            long earlyCount = pulses.earlyCount(start);
+            To to = To.all().withTimestamp(pulses.latestUpTo(end - 1));
+
+            if (earlyCount < 0) {
+                if (count >= threshold) {
+                    context.forward(window, count, to);
+                }
+            } else if (count != earlyCount) {
+                // refined, or retracted if it is below the threshold
+                context.forward(window, count, to);
+            }
+            pulses.closeWindow(start, end);
+            store.put(stateKey(window.key()), pulses.stateBytes());
+            if (windowStart(pulses.latest()) + windowSize <= end) {
+                // the last open window of the patient
+                idlePatients.add(idle(window.key(), pulses.latest()));
+            }
+        }
+
+        while (!idlePatients.isEmpty() && idlePatients.first().window().end() <= closeTime) {
+            Windowed<String> idle = idlePatients.pollFirst();
+            PatientPulses pulses = patients.get(idle.key());
+            // else the patient got a newer pulse since, it is idle again once the window of that pulse closes
+            if (pulses != null && pulses.latest() == idle.window().start()) {
+                removeUpTo(idle.key(), pulses, pulses.latest());
+                store.delete(stateKey(idle.key()));
+                patients.remove(idle.key());
+            }
+        }
+    }
+
+    private void removeUpTo(String patientId, PatientPulses pulses, long timestamp) {
+        int removed = pulses.upperBound(timestamp);
+        for (int i = 0; i < removed; i++) {
+            if (i == 0 || pulses.timestamps[i] != pulses.timestamps[i - 1]) {
+                store.delete(pulseKey(patientId, pulses.timestamps[i]));
+            }
+        }
+        pulses.removeFirst(removed);
+    }
+
+    private static Bytes stateKey(String patientId) {
+        byte[] id = patientId.getBytes(StandardCharsets.UTF_8);
+        return Bytes.wrap(ByteBuffer.allocate(1 + id.length).put(STATE).put(id).array());
+    }
+
+    // the timestamp before the patient id, which has no length
+    private static Bytes pulseKey(String patientId, long timestamp) {
+        byte[] id = patientId.getBytes(StandardCharsets.UTF_8);
+        return Bytes.wrap(ByteBuffer.allocate(1 + Long.BYTES + id.length)
+                .put(PULSE)
+                .putLong(timestamp)
+                .put(id)
+                .array());
+    }
+
+    // the rest of the key
+    private static String patientId(ByteBuffer key) {
+        return new String(key.array(), key.position(), key.remaining(), StandardCharsets.UTF_8);
+    }
+
+    private long windowStart(long timestamp) {
+        return timestamp - Math.floorMod(timestamp, windowSize);
+    }
+
+    private Windowed<String> window(String patientId, long windowStart) {
+        return new Windowed<>(patientId, new TimeWindow(windowStart, windowStart + windowSize));
+    }
+
+    // removable once the close time reaches the end: a pulse accepted then is in a window that starts after the
+    // latest pulse plus a window size, so its sliding window doesn't reach back to the latest pulse
+    private Windowed<String> idle(String patientId, long latest) {
+        return new Windowed<>(patientId, new TimeWindow(latest, latest + 2 * windowSize));
+    }
+
+    @Override
+    public void close() {
+        // the store is closed by Kafka Streams
+    }
+
+    // the pulses of a patient that are still counted, sorted, and the windows that fired early (its state)
+    private static final class PatientPulses {
+        long lastClosedWindowEnd = Long.MIN_VALUE;
+        // whether the count of the sliding window of the latest pulse reached the threshold
+        boolean high;
+        // the start and the early count of the open windows that fired, in pairs (two at most)
+        long[] firedWindows = new long[0];
+        long[] timestamps = new long[16];
+        int size;
+
+        void add(long timestamp) {
+            if (size == timestamps.length) {
+                timestamps = Arrays.copyOf(timestamps, size * 2);
+            }
+            // usually the latest, inserted at the end
+            int index = size;
+            while (index > 0 && timestamps[index - 1] > timestamp) {
+                index--;
+            }
+            System.arraycopy(timestamps, index, timestamps, index + 1, size - index);
+            timestamps[index] = timestamp;
+            size++;
+        }
+
+        void removeFirst(int removed) {
+            System.arraycopy(timestamps, removed, timestamps, 0, size - removed);
+            size -= removed;
+        }
+
+        long latest() {
+            return timestamps[size - 1];
+        }
+
+        long latestUpTo(long timestamp) {
+            return timestamps[upperBound(timestamp) - 1];
+        }
+
+        // the pulses between the two, both included
+        long count(long from, long to) {
+            return upperBound(to) - upperBound(from - 1);
+        }
+
+        // the number of pulses at or before the timestamp
+        int upperBound(long timestamp) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (timestamps[middle] <= timestamp) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        // -1 if the window didn't fire
+        long earlyCount(long windowStart) {
+            for (int i = 0; i < firedWindows.length; i += 2) {
+                if (firedWindows[i] == windowStart) {
+                    return firedWindows[i + 1];
+                }
+            }
+            return -1L;
+        }
+
+        void fire(long windowStart, long count) {
+            firedWindows = Arrays.copyOf(firedWindows, firedWindows.length + 2);
+            firedWindows[firedWindows.length - 2] = windowStart;
+            firedWindows[firedWindows.length - 1] = count;
+        }
+
+        void closeWindow(long windowStart, long windowEnd) {
+            for (int i = 0; i < firedWindows.length; i += 2) {
+                if (firedWindows[i] == windowStart) {
+                    long[] open = new long[firedWindows.length - 2];
+                    System.arraycopy(firedWindows, 0, open, 0, i);
+                    System.arraycopy(firedWindows, i + 2, open, i, open.length - i);
+                    firedWindows = open;
+                    break;
+                }
+            }
+            lastClosedWindowEnd = Math.max(lastClosedWindowEnd, windowEnd);
+        }
+
+        byte[] stateBytes() {
+            ByteBuffer bytes = ByteBuffer.allocate(Long.BYTES * (1 + firedWindows.length) + 1)
+                    .putLong(lastClosedWindowEnd)
+                    .put((byte) (high ? 1 : 0));
+            for (long fired : firedWindows) {
+                bytes.putLong(fired);
+            }
+            return bytes.array();
+        }
+
+        void readState(byte[] value) {
+            ByteBuffer bytes = ByteBuffer.wrap(value);
+            lastClosedWindowEnd = bytes.getLong();
+            high = bytes.get() == 1;
+            firedWindows = new long[bytes.remaining() / Long.BYTES];
+            for (int i = 0; i < firedWindows.length; i++) {
+                firedWindows[i] = bytes.getLong();
+            }
+        }
+    }
+}
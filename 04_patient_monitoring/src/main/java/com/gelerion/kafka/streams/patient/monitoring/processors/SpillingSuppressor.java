@@ -0,0 +1,239 @@
+package com.gelerion.kafka.streams.patient.monitoring.processors;
+
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.common.serialization.Serializer;
+import org.apache.kafka.common.utils.Bytes;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.kstream.TimeWindows;
+import org.apache.kafka.streams.kstream.Transformer;
+import org.apache.kafka.streams.kstream.Windowed;
+import org.apache.kafka.streams.kstream.WindowedSerdes;
+import org.apache.kafka.streams.processor.ProcessorContext;
+import org.apache.kafka.streams.processor.To;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.StoreBuilder;
+import org.apache.kafka.streams.state.Stores;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Forwards the final result of each window of a windowed aggregation once the window closes, like
+ * {@code suppress(untilWindowCloses(...))}, with a bounded amount of memory and without shutting down or emitting
+ * early when it is exceeded.
+ *
+ * The latest result of each open window is buffered in an in-memory store, keyed by window end (then by key), up to
+ * {@code maxMemoryBytes} of keys and values. The windows that don't fit are buffered in a persistent store with the
+ * same keys, on disk. Both stores are sorted, so the windows that close are read with a range scan of each, and
+ * forwarded in window end order, with the timestamp of their latest update. An update of a window replaces it in
+ * whichever store holds it. Both stores have a changelog, like the buffer of suppress.
+ *
+ * The results are expected to come from a windowed aggregation, which drops the records of closed windows: a result
+ * for a window that was already forwarded would be forwarded again. Null results are dropped.
+ */
+public class SpillingSuppressor<V> implements Transformer<Windowed<String>, V, KeyValue<Windowed<String>, V>> {
+    private static final Bytes FIRST_WINDOW_END = Bytes.wrap(new byte[Long.BYTES]);
+
+    private final String memoryStoreName;
+    private final String diskStoreName;
+    private final long grace;
+    private final long maxMemoryBytes;
+    private final Serializer<Windowed<String>> keySerializer;
+    private final Deserializer<Windowed<String>> keyDeserializer;
+    private final Serde<V> valueSerde;
+    private final SuppressionGauges gauges;
+
+    private ProcessorContext context;
+    private KeyValueStore<Bytes, byte[]> memory;
+    private KeyValueStore<Bytes, byte[]> disk;
+    private SuppressionGauges.Task taskGauges;
+    private long observedStreamTime = -1L;
+    private long memoryBytes;
+    private long spilled;
+    // the end of the first window buffered, Long.MAX_VALUE if none is
+    private long firstWindowEnd = Long.MAX_VALUE;
+
+    /**
+     * @param memoryStoreName an in-memory store built with {@link #memoryStoreBuilder(String)}
+     * @param diskStoreName   a persistent store built with {@link #diskStoreBuilder(String)}
+     * @param windows         the windows of the aggregation, whose grace period tells when they close
+     * @param maxMemoryBytes  the bytes of keys and values buffered in memory, the windows beyond it go to disk
+     */
+    public SpillingSuppressor(String memoryStoreName, String diskStoreName, TimeWindows windows, long maxMemoryBytes,
+                              Serde<V> valueSerde, SuppressionGauges gauges) {
+        if (maxMemoryBytes < 0) {
+            throw new IllegalArgumentException("maxMemoryBytes can't be negative, got " + maxMemoryBytes);
+        }
+        this.memoryStoreName = memoryStoreName;
+        this.diskStoreName = diskStoreName;
+        this.grace = windows.gracePeriodMs();
+        this.maxMemoryBytes = maxMemoryBytes;
+        Serde<Windowed<String>> keySerde = WindowedSerdes.timeWindowedSerdeFrom(String.class, windows.size());
+        this.keySerializer = keySerde.serializer();
+        this.keyDeserializer = keySerde.deserializer();
+        this.valueSerde = valueSerde;
+        this.gauges = gauges;
+    }
+
+    public static StoreBuilder<KeyValueStore<Bytes, byte[]>> memoryStoreBuilder(String name) {
+        return Stores.keyValueStoreBuilder(Stores.inMemoryKeyValueStore(name), Serdes.Bytes(), Serdes.ByteArray());
+    }
+
+    public static StoreBuilder<KeyValueStore<Bytes, byte[]>> diskStoreBuilder(String name) {
+        return Stores.keyValueStoreBuilder(Stores.persistentKeyValueStore(name), Serdes.Bytes(), Serdes.ByteArray());
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void init(ProcessorContext context) {
+        this.context = context;
+        this.memory = (KeyValueStore<Bytes, byte[]>) context.getStateStore(memoryStoreName);
+        this.disk = (KeyValueStore<Bytes, byte[]>) context.getStateStore(diskStoreName);
+        // the stores are restored already
+        try (KeyValueIterator<Bytes, byte[]> buffered = memory.all()) {
+            while (buffered.hasNext()) {
+                KeyValue<Bytes, byte[]> window = buffered.next();
+                memoryBytes += size(window.key, window.value);
+            }
+        }
+        try (KeyValueIterator<Bytes, byte[]> buffered = disk.all()) {
+            while (buffered.hasNext()) {
+                buffered.next();
+                spilled++;
+            }
+        }
+        firstWindowEnd = firstWindowEnd();
+        this.taskGauges = gauges.register(context.taskId());
+        updateGauges();
+    }
+
+    @Override
+    public KeyValue<Windowed<String>, V> transform(Windowed<String> key, V value) {
+        if (value == null) {
+            return null;
+        }
+        long timestamp = context.timestamp();
+        observedStreamTime = Math.max(observedStreamTime, timestamp);
+        buffer(key, value, timestamp);
+        forwardClosedWindows();
+        updateGauges();
+        return null;
+    }
+
+    private void buffer(Windowed<String> key, V value, long timestamp) {
+        long windowEnd = key.window().end();
+        Bytes bufferKey = bufferKey(windowEnd, keySerializer.serialize(null, key));
+        byte[] result = valueSerde.serializer().serialize(null, value);
+        byte[] bufferValue = ByteBuffer.allocate(Long.BYTES + result.length).putLong(timestamp).put(result).array();
+
+        byte[] inMemory = memory.get(bufferKey);
+        if (inMemory != null) {
+            memory.put(bufferKey, bufferValue);
+            memoryBytes += bufferValue.length - inMemory.length;
+        } else if (spilled > 0 && disk.get(bufferKey) != null) {
+            disk.put(bufferKey, bufferValue);
+        } else if (memoryBytes + size(bufferKey, bufferValue) <= maxMemoryBytes) {
+            memory.put(bufferKey, bufferValue);
+            memoryBytes += size(bufferKey, bufferValue);
+        } else {
+            // the memory is full, the window stays on disk until it closes
+            disk.put(bufferKey, bufferValue);
+            spilled++;
+        }
+        firstWindowEnd = Math.min(firstWindowEnd, windowEnd);
+    }
+
+    // forwards the windows that end at or before the close time
+    private void forwardClosedWindows() {
+        long closeTime = observedStreamTime - grace;
+        if (firstWindowEnd > closeTime) {
+            return;
+        }
+        // the keys of the windows that end at or before the close time sort before the next window end alone
+        Bytes to = Bytes.wrap(ByteBuffer.allocate(Long.BYTES).putLong(closeTime + 1).array());
+        List<KeyValue<Bytes, byte[]>> inMemory = closedWindows(memory, to);
+        List<KeyValue<Bytes, byte[]>> onDisk = closedWindows(disk, to);
+
+        // merge the two, in window end order
+        int m = 0;
+        int d = 0;
+        while (m < inMemory.size() || d < onDisk.size()) {
+            boolean fromMemory = d == onDisk.size()
+                    || (m < inMemory.size() && inMemory.get(m).key.compareTo(onDisk.get(d).key) < 0);
+            if (fromMemory) {
+                KeyValue<Bytes, byte[]> window = inMemory.get(m++);
+                memory.delete(window.key);
+                memoryBytes -= size(window.key, window.value);
+                forward(window);
+            } else {
+                KeyValue<Bytes, byte[]> window = onDisk.get(d++);
+                disk.delete(window.key);
+                spilled--;
+                forward(window);
+            }
+        }
+        // the oldest window forwarded waited the longest
+        taskGauges.emitLagMs = observedStreamTime - firstWindowEnd;
+        firstWindowEnd = firstWindowEnd();
+    }
+
+    private List<KeyValue<Bytes, byte[]>> closedWindows(KeyValueStore<Bytes, byte[]> store, Bytes to) {
+        List<KeyValue<Bytes, byte[]>> windows = new ArrayList<>();
+        try (KeyValueIterator<Bytes, byte[]> range = store.range(FIRST_WINDOW_END, to)) {
+            range.forEachRemaining(windows::add);
+        }
+        return windows;
+    }
+
+    private void forward(KeyValue<Bytes, byte[]> window) {
+        ByteBuffer key = ByteBuffer.wrap(window.key.get());
+        key.position(Long.BYTES);
+        byte[] windowedKey = new byte[key.remaining()];
+        key.get(windowedKey);
+        ByteBuffer value = ByteBuffer.wrap(window.value);
+        long timestamp = value.getLong();
+        byte[] result = new byte[value.remaining()];
+        value.get(result);
+
+        context.forward(
+                keyDeserializer.deserialize(null, windowedKey),
+                valueSerde.deserializer().deserialize(null, result),
+                To.all().withTimestamp(timestamp));
+    }
+
+    private long firstWindowEnd() {
+        return Math.min(firstWindowEnd(memory), firstWindowEnd(disk));
+    }
+
+    private static long firstWindowEnd(KeyValueStore<Bytes, byte[]> store) {
+        try (KeyValueIterator<Bytes, byte[]> buffered = store.all()) {
+            return buffered.hasNext() ? ByteBuffer.wrap(buffered.peekNextKey().get()).getLong() : Long.MAX_VALUE;
+        }
+    }
+
+    private void updateGauges() {
+        taskGauges.bufferBytes = memoryBytes;
+        taskGauges.spilledRecords = spilled;
+    }
+
+    // window ends aren't negative, so they sort like their bytes
+    private static Bytes bufferKey(long windowEnd, byte[] windowedKey) {
+        return Bytes.wrap(ByteBuffer.allocate(Long.BYTES + windowedKey.length)
+                .putLong(windowEnd)
+                .put(windowedKey)
+                .array());
+    }
+
+    private static long size(Bytes key, byte[] value) {
+        return key.get().length + value.length;
+    }
+
+    @Override
+    public void close() {
+        gauges.unregister(context.taskId());
+    }
+}
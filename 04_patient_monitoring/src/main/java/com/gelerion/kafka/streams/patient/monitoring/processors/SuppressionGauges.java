@@ -0,0 +1,61 @@
+package com.gelerion.kafka.streams.patient.monitoring.processors;
+
+import org.apache.kafka.streams.processor.TaskId;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The state of the {@link SpillingSuppressor}s of an application instance, one per task, to report from another
+ * thread (e.g. the REST service).
+ */
+public class SuppressionGauges {
+    private final Map<TaskId, Task> tasks = new ConcurrentHashMap<>();
+
+    Task register(TaskId taskId) {
+        Task task = new Task();
+        tasks.put(taskId, task);
+        return task;
+    }
+
+    void unregister(TaskId taskId) {
+        tasks.remove(taskId);
+    }
+
+    /** The bytes (keys and values) of the windows buffered in memory */
+    public long bufferBytes() {
+        long bytes = 0;
+        for (Task task : tasks.values()) {
+            bytes += task.bufferBytes;
+        }
+        return bytes;
+    }
+
+    /** The windows that didn't fit in memory, buffered on disk */
+    public long spilledRecords() {
+        long records = 0;
+        for (Task task : tasks.values()) {
+            records += task.spilledRecords;
+        }
+        return records;
+    }
+
+    /**
+     * How far past the end of a window the stream time was when the window was emitted, for the latest emission of
+     * each task, at least the grace period. The largest one
+     */
+    public long emitLagMs() {
+        long lag = 0;
+        for (Task task : tasks.values()) {
+            lag = Math.max(lag, task.emitLagMs);
+        }
+        return lag;
+    }
+
+    // written by the stream thread of the task only
+    static final class Task {
+        volatile long bufferBytes;
+        volatile long spilledRecords;
+        volatile long emitLagMs;
+    }
+}
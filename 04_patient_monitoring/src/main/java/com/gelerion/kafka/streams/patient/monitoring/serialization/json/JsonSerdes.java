@@ -2,6 +2,7 @@ package com.gelerion.kafka.streams.patient.monitoring.serialization.json;
 
 import com.gelerion.kafka.streams.patient.monitoring.models.BodyTemp;
 import com.gelerion.kafka.streams.patient.monitoring.models.CombinedVitals;
+import com.gelerion.kafka.streams.patient.monitoring.models.HeartRate;
 import com.gelerion.kafka.streams.patient.monitoring.models.Pulse;
 import org.apache.kafka.common.serialization.Serde;
 import org.apache.kafka.common.serialization.Serdes;
@@ -20,6 +21,12 @@ public class JsonSerdes {
         return Serdes.serdeFrom(serializer, deserializer);
     }
 
+    public static Serde<HeartRate> HeartRate() {
+        JsonSerializer<HeartRate> serializer = new JsonSerializer<>();
+        JsonDeserializer<HeartRate> deserializer = new JsonDeserializer<>(HeartRate.class);
+        return Serdes.serdeFrom(serializer, deserializer);
+    }
+
     public static Serde<CombinedVitals> CombinedVitals() {
         JsonSerializer<CombinedVitals> serializer = new JsonSerializer<>();
         JsonDeserializer<CombinedVitals> deserializer = new JsonDeserializer<>(CombinedVitals.class);
@@ -4,7 +4,10 @@ import com.gelerion.kafka.streams.patient.monitoring.models.Vital;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.streams.processor.TimestampExtractor;
 
+import java.time.DateTimeException;
 import java.time.Instant;
+import java.time.LocalDate;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * In Kafka Streams, timestamp extractors are responsible for associating a given record with a timestamp, and these
@@ -15,21 +18,167 @@ import java.time.Instant;
  * - Throw an exception and stop processing (giving the developers an opportunity to resolve the bug)
  * - Fallback to the partition time
  * - Return a negative timestamp, which will allow Kafka Streams to skip over the record and continue processing
+ *
+ * The monitors send UTC timestamps in one of two fixed formats, 2020-11-23T09:02:00.000Z or 2020-11-23T09:02:00Z,
+ * which are parsed by hand rather than with {@link Instant#parse}. Consecutive readings share their date and hour,
+ * whose epoch millis are cached per stream thread, so a reading costs a comparison of the first 13 characters and the
+ * parsing of the minutes, seconds and millis. Anything else goes through {@link Instant#parse}. A numeric
+ * {@code epoch_millis} field, or a numeric timestamp, is used as is.
  */
 public class VitalTimestampExtractor implements TimestampExtractor {
+    private static final long INVALID = Long.MIN_VALUE;
+    // yyyy-MM-ddTHH
+    private static final int HOUR_PREFIX_LENGTH = 13;
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+
+    // the extractor is shared by the stream threads
+    private final ThreadLocal<HourCache> hours = ThreadLocal.withInitial(HourCache::new);
+    private final LongAdder slowParses = new LongAdder();
+    private final LongAdder partitionTimeFallbacks = new LongAdder();
 
     // Kafka Streams keeps track of the most recent timestamp it has seen for each partition it consumes from, and
     // passes this timestamp to the extract method using the partitionTime parameter.
     @Override
     public long extract(ConsumerRecord<Object, Object> record, long partitionTime) {
         Vital measurement = (Vital) record.value();
-        if (measurement != null && measurement.getTimestamp() != null) {
-            String timestamp = measurement.getTimestamp();
-            return Instant.parse(timestamp).toEpochMilli();
+        if (measurement != null) {
+            if (measurement.getEpochMillis() != null) {
+                return measurement.getEpochMillis();
+            }
+            if (measurement.getTimestamp() != null) {
+                long timestamp = parse(measurement.getTimestamp());
+                if (timestamp != INVALID) {
+                    return timestamp;
+                }
+            }
         }
 
         // If we cannot extract a timestamp for some reason, we can fall back to the partition time in order
         // to approximate when the event occurred.
+        partitionTimeFallbacks.increment();
         return partitionTime;
     }
+
+    /** The number of timestamps that weren't in one of the fixed formats, and were parsed with Instant.parse */
+    public long slowParses() {
+        return slowParses.sum();
+    }
+
+    /** The number of records without a (valid) timestamp, which were given the partition time */
+    public long partitionTimeFallbacks() {
+        return partitionTimeFallbacks.sum();
+    }
+
+    private long parse(String timestamp) {
+        long epochMillis = parseFixed(timestamp);
+        if (epochMillis != INVALID) {
+            return epochMillis;
+        }
+        if (isEpochMillis(timestamp)) {
+            return Long.parseLong(timestamp);
+        }
+        slowParses.increment();
+        try {
+            return Instant.parse(timestamp).toEpochMilli();
+        } catch (DateTimeException | ArithmeticException e) {
+            return INVALID;
+        }
+    }
+
+    // yyyy-MM-ddTHH:mm:ss.SSSZ or yyyy-MM-ddTHH:mm:ssZ, INVALID for anything else
+    private long parseFixed(String timestamp) {
+        int length = timestamp.length();
+        if ((length != 24 && length != 20) || timestamp.charAt(length - 1) != 'Z'
+                || timestamp.charAt(13) != ':' || timestamp.charAt(16) != ':') {
+            return INVALID;
+        }
+        int minute = digits(timestamp, 14, 2);
+        int second = digits(timestamp, 17, 2);
+        if (minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return INVALID;
+        }
+        int millis = 0;
+        if (length == 24) {
+            millis = timestamp.charAt(19) == '.' ? digits(timestamp, 20, 3) : -1;
+            if (millis < 0) {
+                return INVALID;
+            }
+        }
+
+        long hour = hours.get().epochMillis(timestamp);
+        if (hour == INVALID) {
+            return INVALID;
+        }
+        return hour + minute * 60_000L + second * 1_000L + millis;
+    }
+
+    private static boolean isEpochMillis(String timestamp) {
+        // up to 18 digits, which can't overflow a long
+        if (timestamp.isEmpty() || timestamp.length() > 18) {
+            return false;
+        }
+        for (int i = 0; i < timestamp.length(); i++) {
+            if (timestamp.charAt(i) < '0' || timestamp.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // the decimal number of count digits at from, -1 if they aren't all digits
+    private static int digits(String s, int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    // the epoch millis of the date and hour of the last timestamp the thread parsed
+    private static final class HourCache {
+        private final char[] prefix = new char[HOUR_PREFIX_LENGTH];
+        private boolean cached;
+        private long epochMillis;
+
+        long epochMillis(String timestamp) {
+            if (cached && matches(timestamp)) {
+                return epochMillis;
+            }
+            if (timestamp.charAt(4) != '-' || timestamp.charAt(7) != '-' || timestamp.charAt(10) != 'T') {
+                return INVALID;
+            }
+            int year = digits(timestamp, 0, 4);
+            int month = digits(timestamp, 5, 2);
+            int day = digits(timestamp, 8, 2);
+            int hour = digits(timestamp, 11, 2);
+            if (year < 0 || month < 0 || day < 0 || hour < 0 || hour > 23) {
+                return INVALID;
+            }
+            long parsed;
+            try {
+                // validates the day of the month
+                parsed = LocalDate.of(year, month, day).toEpochDay() * MILLIS_PER_DAY + hour * 3_600_000L;
+            } catch (DateTimeException e) {
+                return INVALID;
+            }
+            timestamp.getChars(0, HOUR_PREFIX_LENGTH, prefix, 0);
+            epochMillis = parsed;
+            cached = true;
+            return epochMillis;
+        }
+
+        private boolean matches(String timestamp) {
+            for (int i = HOUR_PREFIX_LENGTH - 1; i >= 0; i--) {
+                // the hour changes most often, so it is compared first
+                if (prefix[i] != timestamp.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
 }